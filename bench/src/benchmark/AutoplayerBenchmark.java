@@ -0,0 +1,65 @@
+package benchmark;
+
+import model.Autoplayer;
+import model.GameState;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one autoplayer search from the starting position, starting from an empty transposition table every time.
+ * The node counter reports the time per position visited alongside the time per search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoplayerBenchmark {
+    @Param({"2", "3", "4"})
+    public int depth;
+
+    private GameState gameState;
+    private Autoplayer autoplayer;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive("20x15"));
+        autoplayer = new Autoplayer(gameState, depth, 18);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable(){
+        autoplayer.clearTable();
+    }
+
+    @Benchmark
+    public char bestMove(Nodes nodes){
+        long before = autoplayer.getNodeCount();
+        char move = autoplayer.bestMove();
+        nodes.nodes += autoplayer.getNodeCount() - before;
+        return move;
+    }
+
+    /**
+     * Counts the positions visited, reported by JMH as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import model.CatBehaviour;
+import model.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one cat turn after a player step, for random and pursuing cats as the number of cats grows. The player
+ * steps back and forth between two cells, so pursuit pays for an incremental flow field update every turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatBehaviourBenchmark {
+    @Param({"3", "300", "3000"})
+    public int catCount;
+
+    @Param({"RANDOM", "PURSUIT"})
+    public CatBehaviour behaviour;
+
+    private GameState gameState;
+    private char forward;
+    private char back;
+    private boolean out;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive("200x150"), catCount);
+        gameState.setCatBehaviour(behaviour);
+        // (1,1) is always open with open cells to its right and below
+        forward = gameState.isValidMove(2, 1) ? 'D' : 'S';
+        back = forward == 'D' ? 'A' : 'W';
+    }
+
+    @Benchmark
+    public void stepAndMoveCats(){
+        gameState.playerMove(out ? back : forward);
+        out = !out;
+        gameState.moveCats();
+    }
+}
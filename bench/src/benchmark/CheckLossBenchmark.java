@@ -0,0 +1,42 @@
+package benchmark;
+
+import model.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link GameState#checkLoss()} as the number of cats grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckLossBenchmark {
+    @Param({"3", "30", "300", "3000"})
+    public int catCount;
+
+    private GameState gameState;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive("200x150"), catCount);
+    }
+
+    @Benchmark
+    public boolean checkLoss(){
+        return gameState.checkLoss();
+    }
+}
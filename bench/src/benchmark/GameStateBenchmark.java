@@ -0,0 +1,57 @@
+package benchmark;
+
+import model.GameState;
+import model.RandomMovementGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per move hot paths of {@link GameState}: moving the cats, picking a single cat move and revealing
+ * the cells around the player.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+    @Param({"20x15", "200x150"})
+    public String size;
+
+    private GameState gameState;
+    private RandomMovementGenerator movementGenerator;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive(size));
+        movementGenerator = new RandomMovementGenerator(gameState);
+    }
+
+    @Benchmark
+    public void moveCats(){
+        gameState.moveCats();
+    }
+
+    @Benchmark
+    public int[] generateRandomMove(){
+        // (1,1) is always open with open cells to its right and below
+        return movementGenerator.generateRandomMove(1, 1, 0, 0);
+    }
+
+    @Benchmark
+    public void revealCells(){
+        gameState.revealCells(gameState.getPlayer().getX(), gameState.getPlayer().getY());
+    }
+}
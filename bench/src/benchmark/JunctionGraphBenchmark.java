@@ -0,0 +1,55 @@
+package benchmark;
+
+import model.JunctionGraph;
+import model.MazeGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building the junction graph of a maze and computing distances from a cell over it, the work a cheese
+ * respawn does for the player and again for the cats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JunctionGraphBenchmark {
+    private static final int[] SOURCE_X = {1};
+    private static final int[] SOURCE_Y = {1};
+
+    @Param({"20x15", "200x150"})
+    public String size;
+
+    private MazeGrid maze;
+    private JunctionGraph.Distances distances;
+
+    @Setup
+    public void setUp(){
+        maze = Mazes.constructive(size);
+        distances = maze.getJunctionGraph().newDistances();
+    }
+
+    @Benchmark
+    public JunctionGraph build(){
+        return JunctionGraph.build(maze);
+    }
+
+    @Benchmark
+    public int distancesFromCorner(){
+        distances.compute(SOURCE_X, SOURCE_Y, 1);
+        return distances.distance(maze.getWidth() - 2, maze.getHeight() - 2);
+    }
+}
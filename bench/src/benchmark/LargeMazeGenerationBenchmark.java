@@ -0,0 +1,48 @@
+package benchmark;
+
+import model.GenerationMode;
+import model.MazeGenerator;
+import model.MazeGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the generators that never retry on sizes the rejection loop cannot reach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeMazeGenerationBenchmark {
+    @Param({"100x100", "500x500", "2000x2000"})
+    public String size;
+
+    @Param({"CONSTRUCTIVE", "PARALLEL"})
+    public GenerationMode mode;
+
+    private MazeGenerator generator;
+
+    @Setup
+    public void setUp(){
+        int[] dimensions = Mazes.parseSize(size);
+        generator = new MazeGenerator(dimensions[0], dimensions[1]);
+    }
+
+    @Benchmark
+    public MazeGrid generate(){
+        return generator.generate(mode);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmark;
+
+import model.MazeGenerator;
+import model.MazeGrid;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link MazeGenerator#generateValidMaze()}, the rejection loop, across maze sizes. The retries counter
+ * reports how many mazes were thrown away in each iteration; divide by the operation count for retries per maze.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MazeGenerationBenchmark {
+    @Param({"20x15", "22x16", "24x18"})
+    public String size;
+
+    private MazeGenerator generator;
+
+    @Setup
+    public void setUp(){
+        int[] dimensions = Mazes.parseSize(size);
+        generator = new MazeGenerator(dimensions[0], dimensions[1]);
+    }
+
+    /**
+     * Extra counters reported next to the timing results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retries {
+        public long retries;
+
+        @Setup(Level.Iteration)
+        public void reset(){
+            retries = 0;
+        }
+    }
+
+    @Benchmark
+    public MazeGrid generateValidMaze(Retries counters){
+        MazeGrid maze = generator.generateValidMaze();
+        counters.retries += generator.getLastRetryCount();
+        return maze;
+    }
+}
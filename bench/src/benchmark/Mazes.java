@@ -0,0 +1,32 @@
+package benchmark;
+
+import model.GenerationMode;
+import model.MazeGenerator;
+import model.MazeGrid;
+
+/**
+ * Shared helpers for setting up benchmark state.
+ */
+final class Mazes {
+    private Mazes(){
+    }
+
+    /**
+     * @param size a maze size written as WIDTHxHEIGHT, e.g. 20x15.
+     * @return the width and height.
+     */
+    static int[] parseSize(String size){
+        int split = size.indexOf('x');
+        return new int[]{Integer.parseInt(size.substring(0, split)), Integer.parseInt(size.substring(split + 1))};
+    }
+
+    /**
+     * Builds a maze of the given size without the retry loop, so setup time stays predictable for large sizes.
+     * @param size a maze size written as WIDTHxHEIGHT.
+     * @return a valid maze.
+     */
+    static MazeGrid constructive(String size){
+        int[] dimensions = parseSize(size);
+        return new MazeGenerator(dimensions[0], dimensions[1]).generate(GenerationMode.CONSTRUCTIVE);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import model.CatBehaviour;
+import model.GameState;
+import model.RandomStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks one cat turn with very many cats, moved one after another (0 threads) or proposed in parallel on a pool
+ * of the given size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelCatsBenchmark {
+    @Param({"10000", "100000"})
+    public int catCount;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"RANDOM", "PURSUIT"})
+    public CatBehaviour behaviour;
+
+    private GameState gameState;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive("400x300"), catCount, new RandomStreams(1));
+        gameState.setCatBehaviour(behaviour);
+        if (threads > 0) {
+            pool = new ForkJoinPool(threads);
+            gameState.setCatPool(pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void moveCats(){
+        gameState.moveCats();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import model.GameState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import view.UI;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks printing a frame of the maze, either in full or as an ANSI diff against the previous frame. Output goes to
+ * a stream that discards it, so only the cost of producing the frame is measured, not the terminal. The whole maze is
+ * revealed and the cats move before every frame, so the diff always has cells to redraw, as in play; moving the cats
+ * costs the same in both modes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"20x15", "200x150"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean ansi;
+
+    private GameState gameState;
+    private UI ui;
+
+    @Setup
+    public void setUp(){
+        gameState = new GameState(Mazes.constructive(size));
+        gameState.revealEntireMaze();
+        ui = new UI(new PrintStream(OutputStream.nullOutputStream()), ansi);
+        ui.printMaze(gameState);
+    }
+
+    @Benchmark
+    public void printMaze(){
+        gameState.moveCats();
+        ui.printMaze(gameState);
+    }
+}
@@ -0,0 +1,48 @@
+package model;
+
+/**
+ * Class holding the helpers every command line parser uses to read option values, so a missing or malformed value is
+ * reported the same way whichever program is started.
+ */
+final class Arguments {
+    private Arguments(){
+    }
+
+    /**
+     * @param args the arguments passed to main.
+     * @param index where the option's value should be.
+     * @param arg the option, for the error message.
+     * @return the value.
+     * @throws IllegalArgumentException if the arguments end before the value.
+     */
+    static String value(String[] args, int index, String arg){
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + arg);
+        }
+        return args[index];
+    }
+
+    static int parseInt(String arg, String value){
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(arg + " expects a number up to " + Integer.MAX_VALUE + ", got " + value);
+        }
+    }
+
+    static long parseLong(String arg, String value){
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(arg + " expects a number, got " + value);
+        }
+    }
+
+    static double parseDouble(String arg, String value){
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(arg + " expects a number, got " + value);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Class responsible for choosing moves for the mouse with an expectimax search against the game's cats.
+ * <p>
+ * The search plays the real rules on the live {@link GameState} through its reversible make and unmake moves, so no
+ * copies are made. The player picks the best move, then each cat in turn is a chance node over the moves it picks
+ * between, all equally likely: the steps {@link RandomMovementGenerator} allows for random cats, and for pursuing cats
+ * the steps towards the player a {@link FlowField} allows, falling back to random ones like the game does. Each search
+ * depth keeps its own field, updated once per player move, so returning to a shallower depth does not move it back.
+ * Collected cheese is parked off the board rather than respawned, since where it respawns is random. Positions are
+ * identified by a Zobrist hash kept up to date with every move, and values are cached in a fixed size transposition
+ * table that keeps the deeper search on a collision. Leaves are scored on cheese collected, steps to the cheese and
+ * cats close by.
+ */
+public class Autoplayer {
+    private static final double WIN = 1_000_000;
+    private static final double LOSS = -1_000_000;
+    private static final double CHEESE_VALUE = 1000;
+    private static final double STEP_COST = 10;
+    private static final double ADJACENT_CAT_COST = 500;
+    private static final double NEARBY_CAT_COST = 100;
+    private static final char[] KEYS = {'W', 'S', 'A', 'D'};
+    private static final int[][] STEPS = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+
+    private final GameState gameState;
+    private final int depth;
+    private final int width;
+    private final int catCount;
+    private final int offBoard;
+    private final long[] playerKeys;
+    private final long[] catKeys;
+    private final long[] lastKeys;
+    private final long[] cheeseKeys;
+    private final long[] collectedKeys;
+    private final long[] tableKeys;
+    private final double[] tableValues;
+    private final byte[] tableDepths;
+    private final int tableMask;
+    private final int[][] options;
+    private final FlowField cheeseField;
+    private FlowField[] playerFields;
+    private boolean pursuit;
+    private long hash;
+    private long nodeCount;
+
+    /**
+     * @param gameState the game to play, which the search moves around in and always puts back.
+     * @param depth how many player moves to look ahead, at least 1.
+     * @param tableBits the transposition table holds 2^tableBits entries.
+     */
+    public Autoplayer(GameState gameState, int depth, int tableBits){
+        if (depth < 1 || depth > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Search depth must be between 1 and " + Byte.MAX_VALUE + ": " + depth);
+        }
+        if (tableBits < 0 || tableBits > 30) {
+            throw new IllegalArgumentException("Table bits must be between 0 and 30: " + tableBits);
+        }
+        this.gameState = gameState;
+        this.depth = depth;
+        this.width = gameState.getWidth();
+        this.catCount = gameState.getCatCount();
+        int cells = width * gameState.getHeight();
+        this.offBoard = cells;
+
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        this.playerKeys = keys(random, cells);
+        this.catKeys = keys(random, cells);
+        this.lastKeys = keys(random, cells);
+        this.cheeseKeys = keys(random, cells + 1);
+        this.collectedKeys = keys(random, 64);
+
+        this.tableKeys = new long[1 << tableBits];
+        this.tableValues = new double[1 << tableBits];
+        this.tableDepths = new byte[1 << tableBits];
+        this.tableMask = (1 << tableBits) - 1;
+        this.options = new int[depth * catCount][4];
+        this.cheeseField = new FlowField(gameState.getMaze());
+    }
+
+    /**
+     * Searches the current position.
+     * @return the move with the best expected outcome ('W', 'A', 'S' or 'D'), or 0 if the player cannot move at all.
+     */
+    public char bestMove(){
+        int[] freeCellsBefore = null;
+        // Only with assertions enabled: a search must not reorder the cells spawns are drawn from
+        assert (freeCellsBefore = gameState.getFreeCells().snapshot()) != null;
+        Cheese cheese = gameState.getCheese();
+        cheeseField.update(cheese.getX(), cheese.getY());
+        pursuit = gameState.getCatBehaviour() == CatBehaviour.PURSUIT;
+        if (pursuit && playerFields == null) {
+            playerFields = new FlowField[depth];
+            for (int i = 0; i < depth; i++) {
+                playerFields[i] = new FlowField(gameState.getMaze());
+            }
+        }
+        hash = rootHash();
+
+        char best = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int d = 0; d < STEPS.length; d++) {
+            double value = tryPlayerMove(d, depth);
+            if (!Double.isNaN(value) && value > bestValue) {
+                bestValue = value;
+                best = KEYS[d];
+            }
+        }
+        assert Arrays.equals(freeCellsBefore, gameState.getFreeCells().snapshot())
+                : "Search changed the free cell index";
+        return best;
+    }
+
+    /**
+     * Forgets every cached position, for example after the rules a search relies on have changed.
+     */
+    public void clearTable(){
+        Arrays.fill(tableKeys, 0L);
+        Arrays.fill(tableDepths, (byte) 0);
+    }
+
+    /**
+     * @return the number of positions visited by every search so far.
+     */
+    public long getNodeCount(){
+        return nodeCount;
+    }
+
+    private double playerNode(int remaining){
+        nodeCount++;
+        if (remaining == 0) {
+            return evaluate();
+        }
+        int slot = (int) hash & tableMask;
+        if (tableKeys[slot] == hash && tableDepths[slot] >= remaining) {
+            return tableValues[slot];
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        for (int d = 0; d < STEPS.length; d++) {
+            double value = tryPlayerMove(d, remaining);
+            if (!Double.isNaN(value) && value > best) {
+                best = value;
+            }
+        }
+        if (best == Double.NEGATIVE_INFINITY) {
+            best = evaluate();
+        }
+
+        if (tableKeys[slot] != hash || tableDepths[slot] <= remaining) {
+            tableKeys[slot] = hash;
+            tableValues[slot] = best;
+            tableDepths[slot] = (byte) remaining;
+        }
+        return best;
+    }
+
+    /**
+     * Plays a player move followed by the cats, the same order as GameState.step.
+     * @return the expected value, or NaN if the move is blocked.
+     */
+    private double tryPlayerMove(int direction, int remaining){
+        Player player = gameState.getPlayer();
+        Cheese cheese = gameState.getCheese();
+        int from = player.getY() * width + player.getX();
+        int cheeseCell = cell(cheese.getX(), cheese.getY());
+        int collected = gameState.getCheeseCollected();
+        if (!gameState.makePlayerMove(STEPS[direction][0], STEPS[direction][1])) {
+            return Double.NaN;
+        }
+        long saved = hash;
+        hash ^= playerKeys[from] ^ playerKeys[player.getY() * width + player.getX()];
+        if (gameState.getCheeseCollected() != collected) {
+            hash ^= cheeseKeys[cheeseCell] ^ cheeseKeys[offBoard]
+                    ^ collectedKeys[collected & 63] ^ collectedKeys[(collected + 1) & 63];
+        }
+
+        double value;
+        if (gameState.checkWin()) {
+            // Sooner is better, so wins found with more moves to spare score higher
+            value = WIN + remaining;
+        } else if (gameState.checkLoss()) {
+            value = LOSS - remaining;
+        } else {
+            if (pursuit) {
+                // The player has moved but the cats have not, as when the game updates its own field
+                playerFields[depth - remaining].update(player.getX(), player.getY());
+            }
+            value = catNode(0, remaining);
+        }
+
+        gameState.unmakePlayerMove();
+        hash = saved;
+        return value;
+    }
+
+    private double catNode(int cat, int remaining){
+        if (cat == catCount) {
+            return gameState.checkLoss() ? LOSS - remaining : playerNode(remaining - 1);
+        }
+        int[] moves = options[(depth - remaining) * catCount + cat];
+        int count = 0;
+        if (pursuit) {
+            count = playerFields[depth - remaining].nextMoves(gameState.getCatX(cat), gameState.getCatY(cat), moves);
+        }
+        if (count == 0) {
+            count = gameState.catMoveOptions(cat, moves);
+        }
+        if (count == 0) {
+            return tryCatMove(cat, -1, remaining);
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += tryCatMove(cat, moves[i], remaining);
+        }
+        return sum / count;
+    }
+
+    private double tryCatMove(int cat, int move, int remaining){
+        int from = gameState.getCatY(cat) * width + gameState.getCatX(cat);
+        int last = cell(gameState.getLastCatX(cat), gameState.getLastCatY(cat));
+        gameState.makeCatMove(cat, move);
+        long saved = hash;
+        int to = gameState.getCatY(cat) * width + gameState.getCatX(cat);
+        hash ^= catKey(catKeys, from, cat) ^ catKey(catKeys, to, cat)
+                ^ catKey(lastKeys, last, cat) ^ catKey(lastKeys, from, cat);
+
+        double value = catNode(cat + 1, remaining);
+
+        gameState.unmakeCatMove(cat);
+        hash = saved;
+        return value;
+    }
+
+    private double evaluate(){
+        Player player = gameState.getPlayer();
+        int x = player.getX();
+        int y = player.getY();
+        double value = gameState.getCheeseCollected() * CHEESE_VALUE;
+        if (gameState.getCheese().getX() >= 0) {
+            int steps = cheeseField.distance(x, y);
+            if (steps >= 0) {
+                value -= steps * STEP_COST;
+            }
+        }
+        for (int i = 0; i < catCount; i++) {
+            int distance = Math.abs(gameState.getCatX(i) - x) + Math.abs(gameState.getCatY(i) - y);
+            if (distance <= 1) {
+                value -= ADJACENT_CAT_COST;
+            } else if (distance == 2) {
+                value -= NEARBY_CAT_COST;
+            }
+        }
+        return value;
+    }
+
+    private long rootHash(){
+        Player player = gameState.getPlayer();
+        Cheese cheese = gameState.getCheese();
+        long key = playerKeys[player.getY() * width + player.getX()] ^ cheeseKeys[cell(cheese.getX(), cheese.getY())]
+                ^ collectedKeys[gameState.getCheeseCollected() & 63];
+        for (int i = 0; i < catCount; i++) {
+            key ^= catKey(catKeys, gameState.getCatY(i) * width + gameState.getCatX(i), i);
+            key ^= catKey(lastKeys, cell(gameState.getLastCatX(i), gameState.getLastCatY(i)), i);
+        }
+        return key;
+    }
+
+    /**
+     * Cats are told apart by rotating the key of their cell, so two cats on one cell do not cancel out.
+     */
+    private static long catKey(long[] keys, int cell, int cat){
+        return Long.rotateLeft(keys[cell], cat);
+    }
+
+    private int cell(int x, int y){
+        return x < 0 ? offBoard : y * width + x;
+    }
+
+    private static long[] keys(SplittableRandom random, int count){
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,401 @@
+package model;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class responsible for playing many games without a player to see how the rules play out, for tuning how much cheese
+ * wins, how many cats there are and how many cycles the mazes have.
+ * <p>
+ * Every core runs a worker that claims games in batches from a shared counter, so the only thing workers ever contend
+ * on is one atomic add per batch. Game number i is played from seed + i, so the totals are the same whatever the number
+ * of threads. A worker keeps its totals for a batch in plain local variables and adds them to shared adders and an
+ * atomic histogram of game lengths when the batch is done, so the totals can be read while the run goes on and no
+ * locks are taken. The histogram has a bucket per length below MAX_TRACKED_LENGTH and a last one for every game that
+ * long or longer, so a large step limit does not make every worker allocate a bucket per step.
+ */
+public class BalanceRunner {
+    /**
+     * How the mouse picks its moves.
+     */
+    public enum Policy {
+        /** A random step that does not walk into a wall. */
+        RANDOM,
+        /** A step along a shortest path to the cheese, ignoring the cats. */
+        GREEDY
+    }
+
+    public static final int DEFAULT_GAMES = 1_000_000;
+    public static final int DEFAULT_MAX_STEPS = 1000;
+    public static final int DEFAULT_CHEESE_TO_WIN = 5;
+    public static final int MAX_TRACKED_LENGTH = 100_000;
+    private static final int BATCH = 256;
+    private static final char[] MOVE_KEYS = {'W', 'S', 'A', 'D'};
+    private static final int[][] MOVES = {{0, -1}, {0, 1}, {-1, 0}, {1, 0}};
+
+    private final GameOptions options;
+    private final Policy policy;
+    private final long games;
+    private final int threads;
+    private final int maxSteps;
+    private final int cheeseToWin;
+    private final double removalProbability;
+    private final long seed;
+    private final AtomicLong nextGame = new AtomicLong();
+    private final LongAdder played = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder losses = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder squaredSteps = new LongAdder();
+    private final LongAdder cheese = new LongAdder();
+    private final AtomicLongArray lengths;
+    private long elapsedNanos;
+
+    /**
+     * @param options the maze, cat and seed settings every game is played with.
+     * @param policy how the mouse moves.
+     * @param games how many games to play.
+     * @param threads how many games are played at once.
+     * @param maxSteps how many steps a game may last before it counts as a draw.
+     * @param cheeseToWin how much cheese wins a game.
+     * @param removalProbability how likely a wall is to be removed to make cycles.
+     */
+    public BalanceRunner(GameOptions options, Policy policy, long games, int threads, int maxSteps, int cheeseToWin,
+                         double removalProbability){
+        if (games < 1 || threads < 1 || maxSteps < 1 || cheeseToWin < 1) {
+            throw new IllegalArgumentException("Games, threads, max steps and cheese to win must all be at least 1,"
+                    + " got " + games + ", " + threads + ", " + maxSteps + " and " + cheeseToWin);
+        }
+        // Fails here rather than on a worker if the maze settings are not allowed
+        MazeGenerator.checkSize(options.getWidth(), options.getHeight());
+        MazeGenerator.checkRemovalProbability(removalProbability);
+        this.options = options;
+        this.policy = policy;
+        this.games = games;
+        this.threads = threads;
+        this.maxSteps = maxSteps;
+        this.cheeseToWin = cheeseToWin;
+        this.removalProbability = removalProbability;
+        this.seed = options.getSeed() != null ? options.getSeed() : new SplittableRandom().nextLong();
+        this.lengths = new AtomicLongArray(Math.min(maxSteps, MAX_TRACKED_LENGTH) + 1);
+    }
+
+    /**
+     * Plays every game and waits for the workers to finish.
+     * @throws InterruptedException if interrupted while waiting, in which case the workers are interrupted too.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().name("balance-" + i).start(this::work));
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            throw e;
+        } finally {
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private void work(){
+        long[] localLengths = new long[lengths.length()];
+        int[] choices = new int[MOVES.length];
+        while (!Thread.currentThread().isInterrupted()) {
+            long first = nextGame.getAndAdd(BATCH);
+            if (first >= games) {
+                return;
+            }
+            long last = Math.min(games, first + BATCH);
+            long batchWins = 0;
+            long batchLosses = 0;
+            long batchSteps = 0;
+            long batchSquaredSteps = 0;
+            long batchCheese = 0;
+            for (long game = first; game < last; game++) {
+                GameState gameState = newGame(seed + game);
+                int length = play(gameState, new SplittableRandom(~(seed + game)), choices);
+                if (gameState.getCheeseCollected() >= gameState.getCheeseToWin()) {
+                    batchWins++;
+                } else if (gameState.checkLoss()) {
+                    batchLosses++;
+                }
+                batchSteps += length;
+                batchSquaredSteps += (long) length * length;
+                batchCheese += gameState.getCheeseCollected();
+                localLengths[Math.min(length, localLengths.length - 1)]++;
+            }
+            played.add(last - first);
+            wins.add(batchWins);
+            losses.add(batchLosses);
+            steps.add(batchSteps);
+            squaredSteps.add(batchSquaredSteps);
+            cheese.add(batchCheese);
+            for (int i = 0; i < localLengths.length; i++) {
+                if (localLengths[i] != 0) {
+                    lengths.addAndGet(i, localLengths[i]);
+                    localLengths[i] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method which sets up a game from its own seed, the same way the console game does.
+     */
+    private GameState newGame(long gameSeed){
+        RandomStreams streams = new RandomStreams(gameSeed);
+        MazeGenerator generator = new MazeGenerator(options.getWidth(), options.getHeight(), streams.getGeneration());
+        generator.setRemovalProbability(removalProbability);
+        GameState gameState = Game.newGame(generator.generate(options.getGenerationMode()), options, streams);
+        gameState.setCheeseToWin(cheeseToWin);
+        return gameState;
+    }
+
+    /**
+     * Method which plays a game to the end or until it runs out of steps.
+     * @param gameState the game.
+     * @param random where the mouse's choices come from.
+     * @param choices room for the moves the mouse picks between.
+     * @return how many steps the game lasted.
+     */
+    private int play(GameState gameState, SplittableRandom random, int[] choices){
+        FlowField toCheese = policy == Policy.GREEDY ? new FlowField(gameState.getMaze()) : null;
+        StepResult result = StepResult.MOVED;
+        int length = 0;
+        while (result == StepResult.MOVED && length < maxSteps) {
+            Player player = gameState.getPlayer();
+            int choiceCount;
+            if (toCheese != null) {
+                toCheese.update(gameState.getCheese().getX(), gameState.getCheese().getY());
+                choiceCount = toCheese.nextMoves(player.getX(), player.getY(), choices);
+            } else {
+                choiceCount = 0;
+            }
+            if (choiceCount == 0) {
+                for (int i = 0; i < MOVES.length; i++) {
+                    if (gameState.isValidMove(player.getX() + MOVES[i][0], player.getY() + MOVES[i][1])) {
+                        choices[choiceCount++] = i;
+                    }
+                }
+            }
+            if (choiceCount == 0) {
+                break;
+            }
+            result = gameState.step(MOVE_KEYS[choices[random.nextInt(choiceCount)]]);
+            length++;
+        }
+        return length;
+    }
+
+    public long getPlayed(){
+        return played.sum();
+    }
+
+    public long getWins(){
+        return wins.sum();
+    }
+
+    public long getLosses(){
+        return losses.sum();
+    }
+
+    /**
+     * @return how many games ran out of steps before they were won or lost.
+     */
+    public long getDraws(){
+        return played.sum() - wins.sum() - losses.sum();
+    }
+
+    /**
+     * @return the share of games won, 0 before the first game.
+     */
+    public double getWinRate(){
+        long count = played.sum();
+        return count == 0 ? 0 : (double) wins.sum() / count;
+    }
+
+    /**
+     * @return the mean number of steps a game lasted.
+     */
+    public double getMeanLength(){
+        long count = played.sum();
+        return count == 0 ? 0 : (double) steps.sum() / count;
+    }
+
+    /**
+     * @return the standard deviation of the number of steps a game lasted.
+     */
+    public double getLengthDeviation(){
+        long count = played.sum();
+        if (count == 0) {
+            return 0;
+        }
+        double mean = (double) steps.sum() / count;
+        return Math.sqrt(Math.max(0, (double) squaredSteps.sum() / count - mean * mean));
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the number of steps within which that share of the games ended, 0 before the first game. Games of
+     * MAX_TRACKED_LENGTH steps or more all count as MAX_TRACKED_LENGTH.
+     */
+    public int getLengthPercentile(double percentile){
+        long total = 0;
+        for (int i = 0; i < lengths.length(); i++) {
+            total += lengths.get(i);
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < lengths.length(); i++) {
+            seen += lengths.get(i);
+            if (seen >= rank) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return cheese collected per step, over all games.
+     */
+    public double getCheesePerStep(){
+        long stepCount = steps.sum();
+        return stepCount == 0 ? 0 : (double) cheese.sum() / stepCount;
+    }
+
+    /**
+     * @return games played per minute of wall clock time in the last run.
+     */
+    public double getGamesPerMinute(){
+        return elapsedNanos == 0 ? 0 : played.sum() * 60e9 / elapsedNanos;
+    }
+
+    /**
+     * @return a report of the settings and results.
+     */
+    public String describe(){
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Maze %dx%d %s, removal probability %.3f%n", options.getWidth(), options.getHeight(),
+                options.getGenerationMode(), removalProbability));
+        text.append(String.format("Cats %d %s, cheese to win %d, mouse %s, at most %d steps%n", options.getCatCount(),
+                options.getCatBehaviour(), cheeseToWin, policy, maxSteps));
+        text.append(String.format("Seed %d, %d threads%n", seed, threads));
+        long count = getPlayed();
+        text.append(String.format("Games %d in %.1f s, %.0f games/min%n", count, elapsedNanos / 1e9,
+                getGamesPerMinute()));
+        text.append(String.format("Won %d (%.2f%%), lost %d (%.2f%%), out of steps %d (%.2f%%)%n", getWins(),
+                percent(getWins(), count), getLosses(), percent(getLosses(), count), getDraws(),
+                percent(getDraws(), count)));
+        text.append(String.format("Length mean %.1f, deviation %.1f, p50 %s, p90 %s, p99 %s steps%n", getMeanLength(),
+                getLengthDeviation(), percentileText(50), percentileText(90), percentileText(99)));
+        text.append(String.format("Cheese per step %.5f%n", getCheesePerStep()));
+        return text.toString();
+    }
+
+    /**
+     * Shows a percentile that landed in the bucket for the longest games as a lower bound.
+     */
+    private String percentileText(double percentile){
+        int length = getLengthPercentile(percentile);
+        return length == MAX_TRACKED_LENGTH && maxSteps > MAX_TRACKED_LENGTH ? length + "+" : String.valueOf(length);
+    }
+
+    private static double percent(long part, long whole){
+        return whole == 0 ? 0 : part * 100.0 / whole;
+    }
+
+    /**
+     * Plays games from the command line and prints the report. Takes --games N, --threads N, --policy random|greedy,
+     * --max-steps N, --cheese N, --removal P and --report FILE, followed by any game options except --record,
+     * --replay, --corpus, --pool, --realtime, --cat-threads and --endless. Mazes are generated with the constructive
+     * generator unless --generator says otherwise.
+     * @param args the arguments.
+     */
+    public static void main(String[] args){
+        long games = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Policy policy = Policy.RANDOM;
+        int maxSteps = DEFAULT_MAX_STEPS;
+        int cheeseToWin = DEFAULT_CHEESE_TO_WIN;
+        double removalProbability = MazeGenerator.REMOVAL_PROBABILITY;
+        String reportPath = null;
+        // The validated generator can retry for milliseconds per maze, which would cost more than playing the games
+        List<String> gameArgs = new ArrayList<>(List.of("--generator", "constructive"));
+        BalanceRunner runner;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--games":
+                        games = Arguments.parseLong(arg, Arguments.value(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        threads = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                        break;
+                    case "--policy":
+                        policy = Policy.valueOf(Arguments.value(args, ++i, arg).toUpperCase());
+                        break;
+                    case "--max-steps":
+                        maxSteps = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                        break;
+                    case "--cheese":
+                        cheeseToWin = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                        break;
+                    case "--removal":
+                        removalProbability = Arguments.parseDouble(arg, Arguments.value(args, ++i, arg));
+                        break;
+                    case "--report":
+                        reportPath = Arguments.value(args, ++i, arg);
+                        break;
+                    default:
+                        gameArgs.add(arg);
+                        break;
+                }
+            }
+            GameOptions options = GameOptions.parse(gameArgs.toArray(new String[0]));
+            if (options.getRecordPath() != null || options.getReplayPath() != null || options.getCorpusPath() != null
+                    || options.getPoolSize() > 0 || options.getRealtimeMillis() > 0 || options.getCatThreads() > 0
+                    || options.isEndless()) {
+                // Every game is built from its own seed and played to the end on one worker thread
+                throw new IllegalArgumentException("--record, --replay, --corpus, --pool, --realtime, --cat-threads"
+                        + " and --endless cannot be used for balancing");
+            }
+            runner = new BalanceRunner(options, policy, games, threads, maxSteps, cheeseToWin, removalProbability);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: BalanceRunner [--games N] [--threads N] [--policy random|greedy] [--max-steps N]"
+                    + " [--cheese N] [--removal P] [--report FILE] [game options]");
+            System.out.println(GameOptions.usage());
+            return;
+        }
+        try {
+            runner.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted, the report covers the games finished so far.");
+        }
+        String report = runner.describe();
+        System.out.print(report);
+        if (reportPath != null) {
+            try (Writer out = new FileWriter(reportPath)) {
+                out.write(report);
+            } catch (IOException e) {
+                System.out.println("Cannot write report to " + reportPath + ": " + e.getMessage());
+            }
+        }
+    }
+}
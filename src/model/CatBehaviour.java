@@ -0,0 +1,11 @@
+package model;
+
+/**
+ * The ways cats choose where to move each turn.
+ */
+public enum CatBehaviour {
+    /** Wander the maze at random, avoiding backtracking where possible. */
+    RANDOM,
+    /** Follow a shared distance field towards the player along a shortest path. */
+    PURSUIT
+}
@@ -0,0 +1,46 @@
+package model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Class holding the frontier of a maze carving algorithm as packed cell indices (y * width + x) in a plain int array.
+ * Removing a random cell swaps the last cell into its slot, so both adding and removing take constant time, and the
+ * array is kept between mazes so carving does not create garbage once it has grown to size.
+ */
+final class CellFrontier {
+    private int[] cells;
+    private int size;
+
+    CellFrontier(int initialCapacity){
+        cells = new int[Math.max(initialCapacity, 4)];
+    }
+
+    void add(int cell){
+        if (size == cells.length) {
+            int[] grown = new int[cells.length * 2];
+            System.arraycopy(cells, 0, grown, 0, size);
+            cells = grown;
+        }
+        cells[size++] = cell;
+    }
+
+    /**
+     * Removes a cell chosen uniformly at random.
+     * @param random source of randomness.
+     * @return the removed cell.
+     */
+    int removeRandom(RandomGenerator random){
+        int pick = random.nextInt(size);
+        int cell = cells[pick];
+        cells[pick] = cells[--size];
+        return cell;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    void clear(){
+        size = 0;
+    }
+}
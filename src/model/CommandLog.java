@@ -0,0 +1,17 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface for anything that keeps the commands that changed a game, in the order they were played, such as a
+ * {@link ReplayRecorder} or a {@link GameJournal}.
+ */
+public interface CommandLog extends Closeable {
+    /**
+     * Keeps a command that has just been played.
+     * @param command one of the commands {@link Replay#isRecorded(char)} accepts.
+     * @throws IOException if the command cannot be kept.
+     */
+    void record(char command) throws IOException;
+}
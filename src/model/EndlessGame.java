@@ -0,0 +1,95 @@
+package model;
+
+/**
+ * Class responsible for playing an {@link EndlessMaze}. The game is played on a window a few chunks high, which is an
+ * ordinary maze to {@link GameState}. When the player gets close to the bottom of the window it moves down a chunk,
+ * and when they climb back close to its top it moves up a chunk, so only the chunks around the player are ever built.
+ * The cheese still has to be collected as usual, but how deep the player got is the real score.
+ */
+public class EndlessGame {
+    public static final int WINDOW_CHUNKS = 3;
+    private static final int MARGIN = EndlessMaze.CHUNK_HEIGHT / 2;
+    private static final int CACHE_CHUNKS = 8;
+
+    private final EndlessMaze maze;
+    private GameState gameState;
+    private int topChunk;
+    private int maxDepth;
+
+    /**
+     * Starts a game at the top of a new endless maze.
+     * @param width number of columns of the maze.
+     * @param catCount how many cats chase the player.
+     * @param catBehaviour how the cats move.
+     * @param streams the session's randomness. The maze seed comes from the generation stream.
+     */
+    public EndlessGame(int width, int catCount, CatBehaviour catBehaviour, RandomStreams streams){
+        this.maze = new EndlessMaze(width, streams.getGeneration().nextLong(), CACHE_CHUNKS);
+        this.gameState = new GameState(maze.window(0, WINDOW_CHUNKS), catCount, streams);
+        gameState.setCatBehaviour(catBehaviour);
+        gameState.revealCells(gameState.getPlayer().getX(), gameState.getPlayer().getY());
+    }
+
+    /**
+     * Advances the game by one player move, as {@link GameState#step(char)}, then moves the window if the player got
+     * close to one of its ends. Moving the window replaces the game state, so get it again after every step.
+     * @param move the move, W, A, S or D.
+     * @return the result of the move.
+     */
+    public StepResult step(char move){
+        StepResult result = gameState.step(move);
+        if (result != StepResult.MOVED) {
+            return result;
+        }
+        int playerY = gameState.getPlayer().getY();
+        if (playerY >= gameState.getHeight() - 1 - MARGIN) {
+            shift(1);
+        } else if (playerY < MARGIN && topChunk > 0) {
+            shift(-1);
+        }
+        maxDepth = Math.max(maxDepth, getDepth());
+        return result;
+    }
+
+    /**
+     * Moves the window by whole chunks and carries the game over to it.
+     * @param chunks how many chunks to move down, negative to move up.
+     */
+    private void shift(int chunks){
+        topChunk += chunks;
+        gameState = new GameState(gameState, maze.window(topChunk, WINDOW_CHUNKS), chunks * EndlessMaze.CHUNK_HEIGHT);
+        gameState.revealCells(gameState.getPlayer().getX(), gameState.getPlayer().getY());
+    }
+
+    /**
+     * @return the game on the current window.
+     */
+    public GameState getGameState(){
+        return gameState;
+    }
+
+    public EndlessMaze getMaze(){
+        return maze;
+    }
+
+    /**
+     * @return the index of the first chunk in the window.
+     */
+    public int getTopChunk(){
+        return topChunk;
+    }
+
+    /**
+     * @return how many rows below the top of the maze the player is.
+     */
+    public int getDepth(){
+        return topChunk * EndlessMaze.CHUNK_HEIGHT + gameState.getPlayer().getY();
+    }
+
+    /**
+     * @return the deepest the player has been.
+     */
+    public int getMaxDepth(){
+        return maxDepth;
+    }
+}
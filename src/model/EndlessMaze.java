@@ -0,0 +1,228 @@
+package model;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Class holding a maze that goes down forever, generated a chunk of rows at a time with Eller's algorithm.
+ * <p>
+ * Eller's algorithm builds a maze one row at a time and only remembers which cells of the current row are already
+ * connected, so a chunk takes O(width) state to generate whatever its depth. Cells sit on odd coordinates with posts
+ * on every (even, even) position, the same lattice as {@link LatticeCarver}, so the 2x2 rules of
+ * {@link MazeGenerator} hold everywhere, across chunk boundaries too. The last row of every chunk joins all of its
+ * sets, so each chunk is connected on its own, and the first row of each chunk opens at least one passage into the
+ * chunk above it. A chunk therefore only depends on the seed and its own index: chunks are kept in a small LRU cache and
+ * one that was evicted is simply generated again, identically, if the player comes back to it. Memory stays the same
+ * however deep the player goes.
+ */
+public class EndlessMaze {
+    public static final int CHUNK_HEIGHT = 16;
+    private static final double CYCLE_PROBABILITY = 0.1;
+    private static final double BOUNDARY_PROBABILITY = 0.25;
+
+    private final int width;
+    private final long seed;
+    private final int columns;
+    private final boolean evenWidth;
+    private final Map<Integer, MazeGrid> cache;
+    private final int[] sets;
+    private final int[] relabel;
+    private final int[] lastMember;
+    private final boolean[] down;
+    private final boolean[] setHasDown;
+    private long generatedChunks;
+
+    /**
+     * @param width number of columns, at least {@link MazeGenerator#MIN_SIZE}.
+     * @param seed where every chunk is generated from.
+     * @param cacheCapacity how many chunks are kept generated at most.
+     */
+    public EndlessMaze(int width, long seed, int cacheCapacity){
+        if (width < MazeGenerator.MIN_SIZE) {
+            throw new IllegalArgumentException("Endless maze width must be at least " + MazeGenerator.MIN_SIZE + ": "
+                    + width);
+        }
+        if (cacheCapacity < 1) {
+            throw new IllegalArgumentException("Chunk cache needs room for at least 1 chunk: " + cacheCapacity);
+        }
+        this.width = width;
+        this.seed = seed;
+        this.columns = (width - 1) / 2;
+        this.evenWidth = width % 2 == 0;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MazeGrid> eldest){
+                return size() > cacheCapacity;
+            }
+        };
+        this.sets = new int[columns];
+        this.relabel = new int[2 * columns];
+        this.lastMember = new int[2 * columns];
+        this.down = new boolean[columns];
+        this.setHasDown = new boolean[2 * columns];
+    }
+
+    /**
+     * Builds a window onto the maze: a block of whole chunks plus one closing row. The first and last rows are walls
+     * so the window can be played as an ordinary maze.
+     * @param topChunk index of the first chunk in the window.
+     * @param chunkCount how many chunks the window spans.
+     * @return a maze of width columns and chunkCount * CHUNK_HEIGHT + 1 rows.
+     */
+    public MazeGrid window(int topChunk, int chunkCount){
+        if (topChunk < 0 || chunkCount < 1) {
+            throw new IllegalArgumentException("Window needs a chunk index of at least 0 and at least 1 chunk, got "
+                    + topChunk + " and " + chunkCount);
+        }
+        int height = chunkCount * CHUNK_HEIGHT + 1;
+        MazeGrid window = new MazeGrid(width, height);
+        int wordsPerRow = window.getWordsPerRow();
+        for (int i = 0; i < chunkCount; i++) {
+            MazeGrid chunk = chunk(topChunk + i);
+            for (int y = 0; y < CHUNK_HEIGHT; y++) {
+                for (int k = 0; k < wordsPerRow; k++) {
+                    window.setWord(i * CHUNK_HEIGHT + y, k, chunk.getWord(y, k));
+                }
+            }
+        }
+        for (int k = 0; k < wordsPerRow; k++) {
+            window.setWord(0, k, -1L);
+            window.setWord(height - 1, k, -1L);
+        }
+        return window;
+    }
+
+    /**
+     * @param index which chunk, counting down from the top of the maze.
+     * @return the chunk's CHUNK_HEIGHT rows, whose first row holds the passages into the chunk above. Must not be
+     * modified.
+     */
+    MazeGrid chunk(int index){
+        MazeGrid chunk = cache.get(index);
+        if (chunk == null) {
+            chunk = generateChunk(index);
+            cache.put(index, chunk);
+        }
+        return chunk;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * @return how many chunks are in the cache right now.
+     */
+    public int getCachedChunks(){
+        return cache.size();
+    }
+
+    /**
+     * @return how many times a chunk was generated, counting chunks generated again after being evicted.
+     */
+    public long getGeneratedChunks(){
+        return generatedChunks;
+    }
+
+    private MazeGrid generateChunk(int index){
+        generatedChunks++;
+        MazeGrid chunk = new MazeGrid(width, CHUNK_HEIGHT);
+        chunk.fillWalls();
+        SplittableRandom random = new SplittableRandom(seed ^ Long.rotateLeft(index * 0x9E3779B97F4A7C15L, 17));
+
+        if (index > 0) {
+            boolean connected = false;
+            for (int c = 0; c < columns; c++) {
+                if (random.nextDouble() < BOUNDARY_PROBABILITY) {
+                    chunk.setOpen(2 * c + 1, 0);
+                    connected = true;
+                }
+            }
+            if (!connected) {
+                chunk.setOpen(2 * random.nextInt(columns) + 1, 0);
+            }
+        }
+
+        int rows = CHUNK_HEIGHT / 2;
+        for (int c = 0; c < columns; c++) {
+            sets[c] = c;
+        }
+        for (int row = 0; row < rows; row++) {
+            int y = 2 * row + 1;
+            boolean lastRow = row == rows - 1;
+            for (int c = 0; c < columns; c++) {
+                chunk.setOpen(2 * c + 1, y);
+            }
+            if (evenWidth) {
+                // The last interior column holds no cells, so its stubs are opened as LatticeCarver.finish does
+                chunk.setOpen(width - 2, y);
+            }
+            joinAcross(chunk, y, lastRow, random);
+            if (!lastRow) {
+                joinDown(chunk, y, random);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Opens walls between neighbouring cells of a row. Cells in different sets are joined at random, or always on the
+     * last row; cells already in the same set are sometimes joined too, which makes a cycle.
+     */
+    private void joinAcross(MazeGrid chunk, int y, boolean lastRow, SplittableRandom random){
+        for (int c = 0; c + 1 < columns; c++) {
+            if (sets[c] != sets[c + 1]) {
+                if (lastRow || random.nextBoolean()) {
+                    chunk.setOpen(2 * c + 2, y);
+                    int from = sets[c + 1];
+                    int to = sets[c];
+                    for (int i = 0; i < columns; i++) {
+                        if (sets[i] == from) {
+                            sets[i] = to;
+                        }
+                    }
+                }
+            } else if (random.nextDouble() < CYCLE_PROBABILITY) {
+                chunk.setOpen(2 * c + 2, y);
+            }
+        }
+    }
+
+    /**
+     * Opens passages down to the next row, at least one for every set, and works out the next row's sets: cells below
+     * a passage stay in their set, every other cell starts a new one.
+     */
+    private void joinDown(MazeGrid chunk, int y, SplittableRandom random){
+        Arrays.fill(setHasDown, false);
+        for (int c = 0; c < columns; c++) {
+            down[c] = random.nextBoolean();
+            if (down[c]) {
+                setHasDown[sets[c]] = true;
+            }
+            lastMember[sets[c]] = c;
+        }
+        for (int c = 0; c < columns; c++) {
+            if (!setHasDown[sets[c]]) {
+                setHasDown[sets[c]] = true;
+                down[lastMember[sets[c]]] = true;
+            }
+        }
+
+        // Set ids are renumbered every row so they stay below 2 * columns
+        Arrays.fill(relabel, -1);
+        int next = 0;
+        for (int c = 0; c < columns; c++) {
+            int id = columns + c;
+            if (down[c]) {
+                chunk.setOpen(2 * c + 1, y + 1);
+                id = sets[c];
+            }
+            if (relabel[id] < 0) {
+                relabel[id] = next++;
+            }
+            sets[c] = relabel[id];
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package model;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Class holding the distance from every open cell to the player, shared by all cats in pursuit mode. A cat steps to any
+ * neighbour one closer to the player, so each cat moves in O(1) whatever the number of cats.
+ * <p>
+ * The field is rebuilt with a breadth first search only when the player jumps to a cell it cannot reach. When the
+ * player moves to a cell k steps away no distance can grow by more than k, so every distance is first raised by k (by
+ * bumping an offset, not by touching the cells) and a search from the new position then lowers only the cells that got
+ * closer. Every cell on a shortest path from the new position to such a cell also got closer, so that search reaches
+ * all of them. If the player did not move the field is reused as it is. The walls are read once, when the field is
+ * created.
+ */
+public class FlowField {
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    /** Keeps stored distances, which go down to -offset, clear of overflow; the field is rebuilt past it. */
+    private static final int MAX_OFFSET = Integer.MAX_VALUE / 2;
+    private static final int[][] MOVES = {
+            {0, -1}, // UP
+            {0, 1},  // DOWN
+            {-1, 0}, // LEFT
+            {1, 0},  // RIGHT
+    };
+
+    private final int width;
+    private final int height;
+    private final long[] open;
+    private final int[] stored;
+    private final int[] queue;
+    private final int[] options = new int[MOVES.length];
+    private int offset;
+    private int sourceX = -1;
+    private int sourceY = -1;
+
+    public FlowField(MazeGrid maze){
+        this.width = maze.getWidth();
+        this.height = maze.getHeight();
+        this.stored = new int[width * height];
+        this.queue = new int[width * height];
+        this.open = new long[(width * height + 63) >>> 6];
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (!maze.isWall(x, y)) {
+                    int cell = y * width + x;
+                    open[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the field up to date for the player's position.
+     * @param x the x coordinate of the player.
+     * @param y the y coordinate of the player.
+     */
+    public void update(int x, int y){
+        if (x == sourceX && y == sourceY) {
+            return;
+        }
+        int steps = sourceX >= 0 && isOpen(x, y) ? distance(x, y) : -1;
+        if (steps > 0 && offset <= MAX_OFFSET - steps) {
+            offset += steps;
+            relax(x, y);
+        } else {
+            rebuild(x, y);
+        }
+        sourceX = x;
+        sourceY = y;
+    }
+
+    /**
+     * @param x the x coordinate of the cell.
+     * @param y the y coordinate of the cell.
+     * @return the number of steps from the cell to the player, or -1 if the player cannot be reached from it.
+     */
+    public int distance(int x, int y){
+        int value = stored[y * width + x];
+        return value == UNREACHED ? -1 : value + offset;
+    }
+
+    /**
+     * Picks a step towards the player, choosing at random between equally short ones.
+     * @param x the x coordinate of the cat.
+     * @param y the y coordinate of the cat.
+     * @param random source of randomness for breaking ties.
+     * @return the step as {dx, dy}, or null if the cat is on the player or cannot reach them. The array is shared and
+     * must not be modified.
+     */
+    public int[] nextMove(int x, int y, RandomGenerator random){
+        int optionCount = nextMoves(x, y, options);
+        if (optionCount == 0) {
+            return null;
+        }
+        return MOVES[options[optionCount == 1 ? 0 : random.nextInt(optionCount)]];
+    }
+
+    /**
+     * Lists the steps towards the player that nextMove picks between. Only reads the field, so any number of threads
+     * may call it at once between updates.
+     * @param x the x coordinate of the cat.
+     * @param y the y coordinate of the cat.
+     * @param out receives indexes into the moves, in the order of RandomMovementGenerator.moves, needs room for four.
+     * @return how many indexes were written, 0 if the cat is on the player or cannot reach them.
+     */
+    public int nextMoves(int x, int y, int[] out){
+        int current = stored[y * width + x];
+        if (current == UNREACHED || current + offset == 0) {
+            return 0;
+        }
+        int optionCount = 0;
+        for (int i = 0; i < MOVES.length; i++) {
+            int newX = x + MOVES[i][0];
+            int newY = y + MOVES[i][1];
+            if (isOpen(newX, newY) && stored[newY * width + newX] == current - 1) {
+                out[optionCount++] = i;
+            }
+        }
+        return optionCount;
+    }
+
+    private void rebuild(int x, int y){
+        Arrays.fill(stored, UNREACHED);
+        offset = 0;
+        if (!isOpen(x, y)) {
+            return;
+        }
+        stored[y * width + x] = 0;
+        search(y * width + x);
+    }
+
+    private void relax(int x, int y){
+        int source = y * width + x;
+        stored[source] = -offset;
+        search(source);
+    }
+
+    /**
+     * Breadth first search from a cell whose distance is already set, lowering every neighbour that the search reaches
+     * sooner than its current distance. On a fresh field that is every reachable cell.
+     */
+    private void search(int source){
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            int next = stored[cell] + 1;
+            // Open cells are never on the border, so all four neighbours are inside the maze
+            tail = lower(cell - width, next, tail);
+            tail = lower(cell + width, next, tail);
+            tail = lower(cell - 1, next, tail);
+            tail = lower(cell + 1, next, tail);
+        }
+    }
+
+    private int lower(int cell, int distance, int tail){
+        if ((open[cell >>> 6] & (1L << cell)) != 0 && stored[cell] > distance) {
+            stored[cell] = distance;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+
+    /**
+     * Same rule as GameState.isValidMove: the border is never walkable.
+     */
+    private boolean isOpen(int x, int y){
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        int cell = y * width + x;
+        return (open[cell >>> 6] & (1L << cell)) != 0;
+    }
+}
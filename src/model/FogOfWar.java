@@ -0,0 +1,170 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Class holding which cells of the maze the player has revealed, one bit per cell in the same row layout as
+ * {@link MazeGrid}.
+ * <p>
+ * Every cell that becomes revealed is appended to a reveal log, so renderers and network clients can keep a cursor
+ * into the log and fetch only the cells revealed since they last looked. A cell is revealed at most once, so the log
+ * never holds more entries than there are cells. Revealing everything at once is done with whole word writes and is
+ * not logged; instead the generation number changes, which tells every reader to redraw from scratch.
+ */
+public class FogOfWar {
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+    private int[] revealLog = new int[64];
+    private int revealCount;
+    private int generation;
+
+    /**
+     * Creates the fog for a maze with only the border revealed.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     */
+    public FogOfWar(int width, int height){
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+
+        fillRow(0);
+        fillRow(height - 1);
+        for (int y = 1; y < height - 1; y++) {
+            set(0, y);
+            set(width - 1, y);
+        }
+    }
+
+    public boolean isRevealed(int x, int y){
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Reveals the eight cells around a position, skipping any outside the maze. The position itself is left alone.
+     * @param x the x coordinate of the centre.
+     * @param y the y coordinate of the centre.
+     */
+    public void revealAround(int x, int y){
+        for (int dy = -1; dy <= 1; dy++) {
+            int newY = y + dy;
+            if (newY < 0 || newY >= height) {
+                continue;
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                int newX = x + dx;
+                if ((dx != 0 || dy != 0) && newX >= 0 && newX < width) {
+                    reveal(newX, newY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reveals every cell. Readers see a new generation rather than a log entry per cell.
+     */
+    public void revealAll(){
+        for (int y = 0; y < height; y++) {
+            fillRow(y);
+        }
+        revealCount = 0;
+        generation++;
+    }
+
+    /**
+     * @return the number of entries in the reveal log for the current generation.
+     */
+    public int getRevealCount(){
+        return revealCount;
+    }
+
+    /**
+     * @param index position in the reveal log, below {@link #getRevealCount()}.
+     * @return the revealed cell as y * width + x.
+     */
+    public int getRevealedCell(int index){
+        return revealLog[index];
+    }
+
+    /**
+     * @return a number that changes whenever the fog changes in a way the reveal log does not describe.
+     */
+    public int getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Makes fog for the same maze moved up by the given number of rows, keeping what was revealed on the rows both
+     * share. Used when a window onto an endless maze moves.
+     * @param rows how many rows the maze moved up, negative if it moved down.
+     * @return the new fog, with only the border and the shared rows revealed.
+     */
+    FogOfWar shifted(int rows){
+        FogOfWar fog = new FogOfWar(width, height);
+        for (int y = 1; y < height - 1; y++) {
+            int from = y + rows;
+            if (from >= 1 && from < height - 1) {
+                System.arraycopy(words, from * wordsPerRow, fog.words, y * wordsPerRow, wordsPerRow);
+            }
+        }
+        return fog;
+    }
+
+    /**
+     * Writes which cells are revealed, for a game snapshot. The reveal log is not kept.
+     * @param out where the fog is written.
+     * @throws IOException if it cannot be written.
+     */
+    void write(DataOutput out) throws IOException {
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads fog written by write.
+     * @param in where the fog is read from.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     * @return the fog, with an empty reveal log.
+     * @throws IOException if it cannot be read.
+     */
+    static FogOfWar read(DataInput in, int width, int height) throws IOException {
+        FogOfWar fog = new FogOfWar(width, height);
+        for (int i = 0; i < fog.words.length; i++) {
+            fog.words[i] = in.readLong();
+        }
+        return fog;
+    }
+
+    private void reveal(int x, int y){
+        int index = y * wordsPerRow + (x >>> 6);
+        long bit = 1L << x;
+        if ((words[index] & bit) != 0) {
+            return;
+        }
+        words[index] |= bit;
+        if (revealCount == revealLog.length) {
+            int[] grown = new int[Math.min(revealLog.length * 2, width * height)];
+            System.arraycopy(revealLog, 0, grown, 0, revealCount);
+            revealLog = grown;
+        }
+        revealLog[revealCount++] = y * width + x;
+    }
+
+    private void set(int x, int y){
+        words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    private void fillRow(int y){
+        int base = y * wordsPerRow;
+        for (int k = 0; k < wordsPerRow; k++) {
+            words[base + k] = MazeGrid.columnMask(k, 0, width - 1);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class holding the open cells of a maze that nothing stands on, so a random free cell can be drawn in constant time.
+ * <p>
+ * Every open cell inside the border sits in one dense array, with the free cells packed at the front. A second array
+ * maps each cell to its slot. Marking a cell free or taken swaps it across the boundary between the two groups and
+ * moves the boundary, and drawing a free cell is one random slot before the boundary, so all three take the same
+ * time whatever the size of the maze, how many walls it has or how crowded it is.
+ */
+public class FreeCellIndex {
+    private final int width;
+    private final int[] cells;
+    private final int[] slots;
+    private int freeCount;
+
+    /**
+     * Indexes every open cell inside the border of the maze, all of them free.
+     * @param maze the maze to index.
+     */
+    public FreeCellIndex(MazeGrid maze){
+        this.width = maze.getWidth();
+        int height = maze.getHeight();
+        this.slots = new int[width * height];
+        int count = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (!maze.isWall(x, y)) {
+                    count++;
+                }
+            }
+        }
+        this.cells = new int[count];
+        Arrays.fill(slots, -1);
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (!maze.isWall(x, y)) {
+                    slots[y * width + x] = freeCount;
+                    cells[freeCount++] = y * width + x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks a cell as taken. Does nothing if it is already taken or is not an indexed cell.
+     * @param x the x coordinate of the cell.
+     * @param y the y coordinate of the cell.
+     */
+    public void take(int x, int y){
+        int slot = slots[y * width + x];
+        if (slot >= 0 && slot < freeCount) {
+            swap(slot, --freeCount);
+        }
+    }
+
+    /**
+     * Marks a cell as free. Does nothing if it is already free or is not an indexed cell.
+     * @param x the x coordinate of the cell.
+     * @param y the y coordinate of the cell.
+     */
+    public void release(int x, int y){
+        int slot = slots[y * width + x];
+        if (slot >= freeCount) {
+            swap(slot, freeCount++);
+        }
+    }
+
+    /**
+     * @param x the x coordinate of the cell.
+     * @param y the y coordinate of the cell.
+     * @return true if the cell is open, inside the border and free.
+     */
+    public boolean isFree(int x, int y){
+        int slot = slots[y * width + x];
+        return slot >= 0 && slot < freeCount;
+    }
+
+    /**
+     * @return how many cells are free.
+     */
+    public int getFreeCount(){
+        return freeCount;
+    }
+
+    /**
+     * @return how many open cells are indexed, free or not.
+     */
+    public int getCellCount(){
+        return cells.length;
+    }
+
+    /**
+     * @param index which open cell, from 0 to getCellCount() - 1. The free cells come first, so a uniform random index
+     * below getFreeCount() gives a uniform random free cell.
+     * @return the cell as y * width + x.
+     */
+    public int getCell(int index){
+        return cells[index];
+    }
+
+    /**
+     * Writes the order of the cells and which are free, for a game snapshot. Draws depend on the order, so a game
+     * carried on from a snapshot only spawns the same way if the order is kept.
+     * @param out where the index is written.
+     * @throws IOException if it cannot be written.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(cells.length);
+        out.writeInt(freeCount);
+        for (int cell : cells) {
+            out.writeInt(cell);
+        }
+    }
+
+    /**
+     * Reads an index written by write for the same maze.
+     * @param in where the index is read from.
+     * @param maze the maze it indexes.
+     * @return the index.
+     * @throws IOException if it cannot be read or does not fit the maze.
+     */
+    static FreeCellIndex read(DataInput in, MazeGrid maze) throws IOException {
+        FreeCellIndex index = new FreeCellIndex(maze);
+        int count = in.readInt();
+        int freeCount = in.readInt();
+        if (count != index.cells.length || freeCount < 0 || freeCount > count) {
+            throw new IOException("Free cell index does not fit the maze");
+        }
+        Arrays.fill(index.slots, -1);
+        for (int slot = 0; slot < count; slot++) {
+            int cell = in.readInt();
+            if (cell < 0 || cell >= index.slots.length || index.slots[cell] >= 0
+                    || maze.isWall(cell % index.width, cell / index.width)) {
+                throw new IOException("Free cell index does not fit the maze");
+            }
+            index.cells[slot] = cell;
+            index.slots[cell] = slot;
+        }
+        index.freeCount = freeCount;
+        return index;
+    }
+
+    /**
+     * @return a copy of the order of the cells followed by the number of free cells, to check that the index was put
+     * back exactly as it was.
+     */
+    int[] snapshot(){
+        int[] copy = Arrays.copyOf(cells, cells.length + 1);
+        copy[cells.length] = freeCount;
+        return copy;
+    }
+
+    private void swap(int a, int b){
+        int cellA = cells[a];
+        int cellB = cells[b];
+        cells[a] = cellB;
+        cells[b] = cellA;
+        slots[cellB] = a;
+        slots[cellA] = b;
+    }
+}
@@ -1,88 +1,302 @@
 package model;
 import view.UI;
-import java.util.Scanner;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class responsible for handling the game loop.Prompts user for their move input and handles and calls the respective
  * methods.
  */
 public class Game {
-    private static UI ui = new UI();
+    private static final int REALTIME_QUEUE_CAPACITY = 64;
+    private static final Map<Integer, ForkJoinPool> CAT_POOLS = new ConcurrentHashMap<>();
 
 
     public static void main(String[] args) {
-        MazeGenerator generator = new MazeGenerator();
-        char[][] maze = generator.generateValidMaze();
+        GameOptions options;
+        RandomStreams streams;
+        GameState gameState;
+        GameMetrics.register();
+        try {
+            options = GameOptions.parse(args);
+            if (options.getReplayPath() != null) {
+                replay(options.getReplayPath());
+                return;
+            }
+            if (options.getPoolSize() > 0) {
+                // A single game takes one maze, which the pool could not have ready before it is asked for
+                throw new IllegalArgumentException("--pool is only for GameServer and HttpFrontend, which start many"
+                        + " games");
+            }
+            streams = options.getSeed() != null ? new RandomStreams(options.getSeed()) : RandomStreams.withRandomSeed();
+            if (options.isEndless()) {
+                playEndless(options, streams);
+                return;
+            }
+            if (options.getCorpusPath() != null) {
+                try (MazeSource mazes = new MazeSource(options)) {
+                    gameState = mazes.newGame(streams);
+                } catch (IOException e) {
+                    System.out.println("Cannot read corpus " + options.getCorpusPath() + ": " + e.getMessage());
+                    return;
+                }
+            } else if (options.getJournalPath() != null) {
+                // The journal starts the game itself, or carries on the one it holds
+                gameState = null;
+            } else {
+                gameState = newGame(options, streams);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(GameOptions.usage());
+            return;
+        }
+        CommandLog recorder = null;
+        GameJournal journal = null;
+        if (options.getJournalPath() != null) {
+            try {
+                journal = GameJournal.open(Paths.get(options.getJournalPath()), options, streams,
+                        GameJournal.DEFAULT_SNAPSHOT_INTERVAL);
+            } catch (IOException e) {
+                System.out.println("Cannot open journal in " + options.getJournalPath() + ": " + e.getMessage());
+                return;
+            }
+            if (journal.isResumed()) {
+                System.out.println("Carrying on the game saved in " + options.getJournalPath() + ".");
+            }
+            gameState = journal.getGameState();
+            recorder = journal;
+        }
+        if (options.getRecordPath() != null) {
+            try {
+                recorder = new ReplayRecorder(new FileOutputStream(options.getRecordPath()), options, streams.getSeed());
+            } catch (IOException e) {
+                System.out.println("Cannot record to " + options.getRecordPath() + ": " + e.getMessage());
+                return;
+            }
+        }
+        SpectatorHub spectators = openSpectators(options);
+        if (options.getRealtimeMillis() > 0) {
+            playRealtime(gameState, options, spectators);
+            closeSpectators(spectators);
+            System.out.println("Session seed: " + streams.getSeed());
+            return;
+        }
+        StepResult result = null;
+        try {
+            GameSession session = new GameSession(gameState, System.in, System.out, options.isAnsi(), recorder);
+            session.setSpectators(spectators);
+            result = session.run();
+        } catch (IOException e) {
+            System.out.println("Cannot read your move: " + e.getMessage());
+        } finally {
+            closeSpectators(spectators);
+            if (recorder != null) {
+                try {
+                    if (journal != null && result != null) {
+                        // The game is over, so there is nothing left to carry on
+                        journal.discard();
+                    } else {
+                        recorder.close();
+                    }
+                } catch (IOException e) {
+                    System.out.println("Recording was not saved: " + e.getMessage());
+                }
+            }
+        }
+        System.out.println("Session seed: " + streams.getSeed());
+        if (GameMetrics.ENABLED) {
+            System.out.print(GameMetrics.get().describe());
+        }
+    }
 
-        GameState gameState = new GameState(maze);
-        gameState.placeEntities();
-        ui.startingMenu();
-        ui.helpMenu();
+    /**
+     * Method which sets up a game. Everything random is drawn from the given streams, so the same options and seed
+     * always give the same game.
+     * @param options the settings to play with.
+     * @param streams the session's randomness.
+     * @return the new game.
+     */
+    static GameState newGame(GameOptions options, RandomStreams streams){
+        MazeGenerator generator = new MazeGenerator(options.getWidth(), options.getHeight(), streams.getGeneration());
+        return newGame(generator.generate(options.getGenerationMode()), options, streams);
+    }
+
+    /**
+     * Method which starts a pool of mazes for the given options, with a producer for every core but one.
+     * @param options the settings to play with.
+     * @return the running pool.
+     */
+    static MazePool pool(GameOptions options){
+        int producers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new MazePool(options.getPoolSize(), producers, options.getWidth(), options.getHeight(),
+                options.getGenerationMode());
+    }
+
+    /**
+     * Method which gives the fork-join pool for moving cats on the given number of threads. Pools are shared by every
+     * game asking for the same number, so a server does not start threads for each session.
+     * @param threads how many threads the pool has.
+     * @return the pool.
+     */
+    static ForkJoinPool catPool(int threads){
+        return CAT_POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    /**
+     * Method which sets up a game on a maze that is already built.
+     * @param maze the walls of the maze.
+     * @param options the settings to play with, of which the maze settings are ignored.
+     * @param streams the session's randomness.
+     * @return the new game.
+     */
+    static GameState newGame(MazeGrid maze, GameOptions options, RandomStreams streams){
+        GameState gameState = new GameState(maze, options.getCatCount(), streams);
+        gameState.setCatBehaviour(options.getCatBehaviour());
+        if (options.getCatThreads() > 0) {
+            gameState.setCatPool(catPool(options.getCatThreads()));
+        }
         int playerX = gameState.getPlayer().getX();
         int playerY = gameState.getPlayer().getY();
         gameState.revealCells(playerX,playerY);
+        return gameState;
+    }
 
-        Scanner scanner = new Scanner(System.in);
-        boolean validMove = true;
-        boolean skipPrint = false;
-        while (true) {
-            if(validMove && !skipPrint){
-                gameState.printMaze();
-                System.out.println("Cheese collected: " + gameState.getCheeseCollected() + " of " + gameState.getCheeseToWin());
-            }
-            System.out.println("Enter your move [WASD?]: ");
-            String input = scanner.nextLine().toUpperCase();
-
-            if(input.isEmpty()){
-                System.out.println("Invalid move. Please enter just A (left), S (down), D (right), or W (up).");
-                skipPrint = true;
-                continue;
-            }
+    /**
+     * Method which opens the port spectators watch the game on, if the options ask for one. The game is played without
+     * spectators if the port cannot be opened.
+     * @param options the settings to play with.
+     * @return the hub to broadcast the game to, or null.
+     */
+    private static SpectatorHub openSpectators(GameOptions options){
+        if (options.getSpectatePort() < 0) {
+            return null;
+        }
+        try {
+            SpectatorHub spectators = new SpectatorHub(options.getSpectatePort());
+            System.out.println("Spectators can watch at http://localhost:" + spectators.getPort() + "/");
+            return spectators;
+        } catch (IOException e) {
+            System.out.println("Cannot open port " + options.getSpectatePort() + " for spectators: " + e.getMessage());
+            return null;
+        }
+    }
 
-            char move = input.charAt(0);
-            validMove = true;
-            skipPrint = false;
+    /**
+     * Method which disconnects the spectators and prints what they were sent.
+     * @param spectators the hub the game was broadcast to, or null.
+     */
+    private static void closeSpectators(SpectatorHub spectators){
+        if (spectators == null) {
+            return;
+        }
+        try {
+            spectators.close();
+        } catch (IOException e) {
+            // The game is over, so there is nobody left to tell
+        }
+        System.out.println(spectators.describe());
+    }
 
-            if (move == '?') {
-                ui.helpMenu();
-                skipPrint = true;
-                continue;
+    /**
+     * Method which plays a game in real time on the console. A daemon thread reads moves as they are typed and queues
+     * them for the game, so typing never holds the cats up. Input is still read a line at a time by the terminal, so every
+     * move on a line is played when Enter is pressed.
+     * @param gameState the game to play.
+     * @param options the settings to play with.
+     * @param spectators the hub to broadcast every tick to, or null.
+     */
+    private static void playRealtime(GameState gameState, GameOptions options, SpectatorHub spectators){
+        UI ui = new UI(System.out, options.isAnsi());
+        MoveQueue moves = new MoveQueue(REALTIME_QUEUE_CAPACITY);
+        RealtimeGame game = new RealtimeGame(gameState, moves, options.getRealtimeMillis());
+        Thread.ofPlatform().daemon().name("move-reader").start(() -> {
+            try {
+                int c;
+                while ((c = System.in.read()) >= 0) {
+                    if (c != '\n' && c != '\r') {
+                        moves.offer((char) c);
+                    }
+                }
+            } catch (IOException e) {
+                // Nothing more can be read, so end the game below
             }
+            game.stop();
+        });
 
-
-            if (move == 'C'){
-                gameState.changeCheeseToWin();
-                continue;
-            }
-            if(move == 'M'){
-                gameState.revealEntireMaze();
-                System.out.println("The entire maze has been revealed!");
-                continue;
+        ui.startingMenu();
+        System.out.println("The cats move every " + options.getRealtimeMillis() + " ms. Type moves (W, A, S, D) and press"
+                + " Enter; every move on a line is played.");
+        ui.printMaze(gameState);
+        if (spectators != null) {
+            spectators.publish(gameState, 'P');
+        }
+        StepResult result = game.run((tick, tickResult) -> {
+            if (spectators != null) {
+                spectators.publish(gameState, tickResult == StepResult.WON ? 'W'
+                        : tickResult == StepResult.LOST ? 'L' : 'P');
             }
-            if(!gameState.playerMove(move)){
-                validMove = false;
-            }else {
-                int playerNewX = gameState.getPlayer().getX();
-                int playerNewY = gameState.getPlayer().getY();
-                gameState.revealCells(playerNewX, playerNewY);
+            ui.printMaze(gameState);
+            System.out.println("Cheese collected: " + gameState.getCheeseCollected() + " of " + gameState.getCheeseToWin());
+        });
+        if (result == StepResult.WON) {
+            System.out.println("Game Over! You Win!");
+        } else if (result == StepResult.LOST) {
+            System.out.println("Game Over!");
+        }
+        System.out.println(game.describe());
+    }
 
-                if (gameState.checkWin()) {
-                    System.out.println("Game Over! You Win!");
-                    break;
-                }
-                if (gameState.checkLoss()) {
-                    System.out.println("Game Over!");
-                    break;
-                }
-                gameState.moveCats();
-                System.out.println("cats Moved");
+    /**
+     * Method which plays an endless maze on the console and prints how deep the player got.
+     * @param options the settings to play with.
+     * @param streams the session's randomness.
+     */
+    private static void playEndless(GameOptions options, RandomStreams streams){
+        EndlessGame endless = new EndlessGame(options.getWidth(), options.getCatCount(), options.getCatBehaviour(),
+                streams);
+        if (options.getCatThreads() > 0) {
+            endless.getGameState().setCatPool(catPool(options.getCatThreads()));
+        }
+        SpectatorHub spectators = openSpectators(options);
+        try {
+            GameSession session = new GameSession(endless, System.in, System.out, options.isAnsi());
+            session.setSpectators(spectators);
+            session.run();
+        } catch (IOException e) {
+            System.out.println("Cannot read your move: " + e.getMessage());
+        } finally {
+            closeSpectators(spectators);
+        }
+        System.out.println("Deepest row reached: " + endless.getMaxDepth());
+        System.out.println("Session seed: " + streams.getSeed());
+    }
 
-                if (gameState.checkLoss()) {
-                    System.out.println("Game Over!");
-                    break;
-                }
-            }
+    /**
+     * Method which plays a recorded game back without drawing it and prints how it ended.
+     * @param path the replay file.
+     */
+    private static void replay(String path){
+        Replay replay;
+        try {
+            replay = Replay.read(new FileInputStream(path));
+        } catch (IOException e) {
+            System.out.println("Cannot read replay " + path + ": " + e.getMessage());
+            return;
         }
-        scanner.close();
+        long start = System.nanoTime();
+        GameState gameState = replay.newGame();
+        StepResult result = replay.play(gameState);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println("Replayed " + replay.getCommandCount() + " commands from seed " + replay.getSeed()
+                + " in " + micros + " us.");
+        System.out.println("Result: " + (result == null ? "no moves" : result) + ", cheese collected: "
+                + gameState.getCheeseCollected() + " of " + gameState.getCheeseToWin());
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events for the phases timed by {@link GameMetrics}. An event is begun before its phase and committed
+ * after it. The events of every tick are only created when a recording has their type enabled, so in normal play a
+ * tick allocates nothing for them. Start a recording with {@code -XX:StartFlightRecording} or {@code jcmd}.
+ */
+public final class GameEvents {
+    private static final String CATEGORY = "Maze Game";
+
+    public static final EventType PLAYER_MOVE = EventType.getEventType(PlayerMove.class);
+    public static final EventType MOVE_CATS = EventType.getEventType(MoveCats.class);
+    public static final EventType REVEAL_CELLS = EventType.getEventType(RevealCells.class);
+    public static final EventType PRINT_MAZE = EventType.getEventType(PrintMaze.class);
+
+    private GameEvents(){
+    }
+
+    @Name("model.GenerateValidMaze")
+    @Label("Generate Valid Maze")
+    @Category({CATEGORY, "Generation"})
+    @Description("Generating a maze with the validated generator, retries included")
+    public static final class GenerateValidMaze extends Event {
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("Retries")
+        public int retries;
+    }
+
+    @Name("model.AddCycles")
+    @Label("Add Cycles")
+    @Category({CATEGORY, "Generation"})
+    public static final class AddCycles extends Event {
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+    }
+
+    @Name("model.PlayerMove")
+    @Label("Player Move")
+    @Category({CATEGORY, "Tick"})
+    public static final class PlayerMove extends Event {
+        @Label("Moved")
+        public boolean moved;
+    }
+
+    @Name("model.MoveCats")
+    @Label("Move Cats")
+    @Category({CATEGORY, "Tick"})
+    public static final class MoveCats extends Event {
+        @Label("Cat Count")
+        public int catCount;
+    }
+
+    @Name("model.RevealCells")
+    @Label("Reveal Cells")
+    @Category({CATEGORY, "Tick"})
+    public static final class RevealCells extends Event {
+        @Label("Revealed Cells")
+        @Description("Cells revealed so far in the game")
+        public int revealed;
+    }
+
+    @Name("model.PrintMaze")
+    @Label("Print Maze")
+    @Category({CATEGORY, "Tick"})
+    public static final class PrintMaze extends Event {
+    }
+}
@@ -0,0 +1,549 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Class responsible for keeping a game on disk as it is played, so it can be carried on after the process dies.
+ * <p>
+ * The journal is an append-only file: a header with the session seed and settings, like a {@link Replay}, followed by
+ * one byte per command that changed the game. The game loop only copies that byte into a buffer under a lock; a writer
+ * thread swaps the buffer out, writes it and fsyncs it, so every command that arrived during one fsync is made durable
+ * by the next. This is group commit: the game never waits for the disk, and a burst of moves costs one fsync rather than
+ * one per move. A crash loses at most the commands of the last few milliseconds.
+ * <p>
+ * Replaying a long journal from the seed would take longer the longer the game ran, so every few hundred commands the
+ * game is snapshotted. A snapshot holds the whole game except its randomness, which cannot be read back out of the
+ * random streams. Instead the game is reseeded at every snapshot with a fresh seed that is written to both the journal
+ * and the snapshot. A recovered game starts from the latest snapshot with that seed and plays the journal tail after
+ * it, so recovery time is bounded by the snapshot interval. The writer thread writes a snapshot only after the journal
+ * up to its reseed record is on disk, and moves it into place atomically, so a snapshot never gets ahead of the
+ * journal. The format is big endian:
+ * <pre>
+ *   journal:  4 bytes "MZJN", 1 byte version, 8 bytes seed, 4 bytes width, 4 bytes height,
+ *             1 byte generation mode, 4 bytes cat count, 1 byte cat behaviour, 4 bytes cat threads,
+ *             then records: 1 byte command code 1 to 6 as in a replay, or 7 followed by an 8 byte reseed.
+ *   snapshot: 4 bytes "MZSN", 1 byte version, 8 bytes journal position just after its reseed record,
+ *             8 bytes seed, 4 bytes length, the game as written by GameState.writeSnapshot, 4 bytes CRC-32 of it.
+ * </pre>
+ * Reseeding means a journalled game does not play out like a replay of the same seed, so a game cannot be journalled
+ * and recorded at once.
+ */
+public class GameJournal implements CommandLog {
+    static final byte[] MAGIC = {'M', 'Z', 'J', 'N'};
+    static final byte[] SNAPSHOT_MAGIC = {'M', 'Z', 'S', 'N'};
+    static final int VERSION = 1;
+    public static final String JOURNAL_FILE = "game.journal";
+    public static final String SNAPSHOT_FILE = "game.snapshot";
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 256;
+    private static final int RESEED = 7;
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 4 + 4 + 1 + 4 + 1 + 4;
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final GameState gameState;
+    private final boolean resumed;
+    private final int snapshotInterval;
+    private final SplittableRandom seeds = new SplittableRandom();
+    private final Object lock = new Object();
+    private final Thread writer;
+    private int sinceSnapshot;
+    // Guarded by lock
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+    private byte[] pendingSnapshot;
+    private long pendingSnapshotPosition;
+    private long pendingSnapshotSeed;
+    private long appended;
+    private long durable;
+    private long syncs;
+    private long snapshots;
+    private IOException failure;
+    private boolean closing;
+
+    private GameJournal(Path directory, FileChannel channel, GameState gameState, boolean resumed, long position,
+                        int snapshotInterval){
+        this.directory = directory;
+        this.channel = channel;
+        this.gameState = gameState;
+        this.resumed = resumed;
+        this.snapshotInterval = snapshotInterval;
+        this.appended = position;
+        this.durable = position;
+        this.writer = Thread.ofPlatform().daemon().name("journal-writer").start(this::write);
+    }
+
+    /**
+     * Opens the journal in a directory. If it holds a game that is still going, that game is recovered from the
+     * latest snapshot and the journal after it; otherwise a new game is started and journalled.
+     * @param directory where the journal and snapshot are kept, created if missing.
+     * @param options the settings for a new game. A recovered game keeps the settings it was started with.
+     * @param streams the randomness for a new game.
+     * @param snapshotInterval how many commands go between snapshots.
+     * @return the journal, whose game is ready to play.
+     * @throws IOException if the journal cannot be read, created or written.
+     */
+    public static GameJournal open(Path directory, GameOptions options, RandomStreams streams, int snapshotInterval)
+            throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1: " + snapshotInterval);
+        }
+        Files.createDirectories(directory);
+        Path journalPath = directory.resolve(JOURNAL_FILE);
+        if (Files.exists(journalPath)) {
+            GameJournal journal = recover(directory, snapshotInterval);
+            if (journal != null) {
+                return journal;
+            }
+        }
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+        GameState gameState = Game.newGame(options, streams);
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE);
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.write(MAGIC);
+            header.writeByte(VERSION);
+            header.writeLong(streams.getSeed());
+            header.writeInt(options.getWidth());
+            header.writeInt(options.getHeight());
+            header.writeByte(options.getGenerationMode().ordinal());
+            header.writeInt(options.getCatCount());
+            header.writeByte(options.getCatBehaviour().ordinal());
+            header.writeInt(options.getCatThreads());
+            writeFully(channel, bytes.toByteArray(), HEADER_SIZE);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new GameJournal(directory, channel, gameState, false, HEADER_SIZE, snapshotInterval);
+    }
+
+    /**
+     * Rebuilds the game in a journal directory.
+     * @return the journal ready to append to, or null if the game in it was already over.
+     */
+    private static GameJournal recover(Path directory, int snapshotInterval) throws IOException {
+        byte[] journal = Files.readAllBytes(directory.resolve(JOURNAL_FILE));
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(journal));
+        GameOptions options;
+        long seed;
+        int catThreads;
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            header.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a game journal");
+            }
+            int version = header.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            seed = header.readLong();
+            int width = header.readInt();
+            int height = header.readInt();
+            GenerationMode mode = enumAt(GenerationMode.values(), header.readUnsignedByte());
+            int catCount = header.readInt();
+            CatBehaviour behaviour = enumAt(CatBehaviour.values(), header.readUnsignedByte());
+            catThreads = header.readInt();
+            options = new GameOptions(width, height, mode, catCount, behaviour);
+        } catch (EOFException e) {
+            // The header is forced before anything else is written, so no game was ever played
+            return null;
+        }
+
+        GameState gameState;
+        int position = HEADER_SIZE;
+        Snapshot snapshot = Snapshot.read(directory.resolve(SNAPSHOT_FILE));
+        if (snapshot != null && snapshot.position <= journal.length) {
+            gameState = snapshot.newGame();
+            position = (int) snapshot.position;
+        } else {
+            gameState = Game.newGame(options, new RandomStreams(seed));
+        }
+        if (catThreads > 0) {
+            gameState.setCatPool(Game.catPool(catThreads));
+        }
+
+        while (position < journal.length) {
+            int code = journal[position] & 0xFF;
+            char command = Replay.command(code);
+            if (code == RESEED) {
+                if (position + 9 > journal.length) {
+                    break;
+                }
+                gameState.reseed(new RandomStreams(readLong(journal, position + 1)));
+                position += 9;
+            } else if (command != 0) {
+                if (command == 'C') {
+                    gameState.changeCheeseToWin();
+                } else if (command == 'M') {
+                    gameState.revealEntireMaze();
+                } else {
+                    gameState.step(command);
+                }
+                position++;
+            } else {
+                // A torn write at the end of the file, everything before it is good
+                break;
+            }
+        }
+        if (gameState.checkLoss() || gameState.getCheeseCollected() >= gameState.getCheeseToWin()) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.WRITE);
+        channel.truncate(position);
+        channel.position(position);
+        return new GameJournal(directory, channel, gameState, true, position, snapshotInterval);
+    }
+
+    /**
+     * Appends a command to the journal and snapshots the game if it is time to. Only copies into memory; the writer
+     * thread makes it durable shortly after.
+     * @param command a command that was just played on the journal's game.
+     * @throws IOException if the journal is closed or the writer thread has failed.
+     */
+    @Override
+    public void record(char command) throws IOException {
+        byte code = (byte) Replay.encode(command);
+        synchronized (lock) {
+            ensureOpen();
+            ensureCapacity(1);
+            pending[pendingLength++] = code;
+            appended++;
+            if (pendingLength == 1) {
+                lock.notify();
+            }
+        }
+        if (++sinceSnapshot >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Method which snapshots the game and reseeds it, so the game carries on from the snapshot exactly as a recovered
+     * game would.
+     */
+    private void snapshot() throws IOException {
+        sinceSnapshot = 0;
+        long seed = seeds.nextLong();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        gameState.writeSnapshot(new DataOutputStream(bytes));
+        synchronized (lock) {
+            ensureOpen();
+            ensureCapacity(9);
+            pending[pendingLength++] = RESEED;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                pending[pendingLength++] = (byte) (seed >>> shift);
+            }
+            appended += 9;
+            pendingSnapshot = bytes.toByteArray();
+            pendingSnapshotPosition = appended;
+            pendingSnapshotSeed = seed;
+            lock.notify();
+        }
+        gameState.reseed(new RandomStreams(seed));
+    }
+
+    /**
+     * Waits until everything recorded so far is on disk. Not needed for durability in normal play, where the writer
+     * thread catches up within milliseconds.
+     * @throws IOException if the writer thread has failed.
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            while (durable < appended && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal", e);
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Journal cannot be written", failure);
+            }
+        }
+    }
+
+    /**
+     * Writes everything recorded so far and closes the journal, keeping it on disk so the game can be carried on.
+     * @throws IOException if the writer thread failed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            lock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IOException("Journal cannot be written", failure);
+            }
+        }
+    }
+
+    /**
+     * Closes the journal and deletes it, for a game that is over.
+     * @throws IOException if the files cannot be deleted.
+     */
+    public void discard() throws IOException {
+        try {
+            close();
+        } finally {
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+            Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+        }
+    }
+
+    /**
+     * @return the game kept by this journal.
+     */
+    public GameState getGameState(){
+        return gameState;
+    }
+
+    /**
+     * @return true if the game was recovered from an earlier journal rather than started new.
+     */
+    public boolean isResumed(){
+        return resumed;
+    }
+
+    /**
+     * @return the size of the journal including everything recorded so far, in bytes.
+     */
+    public long getAppendedBytes(){
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    /**
+     * @return how much of the journal is known to be on disk, in bytes.
+     */
+    public long getDurableBytes(){
+        synchronized (lock) {
+            return durable;
+        }
+    }
+
+    /**
+     * @return how many times the journal has been fsynced, each time for a whole batch of commands.
+     */
+    public long getSyncCount(){
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+
+    /**
+     * @return how many snapshots have been written.
+     */
+    public long getSnapshotCount(){
+        synchronized (lock) {
+            return snapshots;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal cannot be written", failure);
+        }
+        if (closing) {
+            throw new IOException("Journal is closed");
+        }
+    }
+
+    private void ensureCapacity(int extra){
+        if (pendingLength + extra > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + extra));
+        }
+    }
+
+    /**
+     * Runs on the writer thread: takes whatever has been recorded, writes and fsyncs it in one go, then writes the
+     * snapshot that came with it, until the journal is closed and drained.
+     */
+    private void write(){
+        byte[] batch = new byte[256];
+        while (true) {
+            int length;
+            byte[] snapshot;
+            long snapshotPosition;
+            long snapshotSeed;
+            synchronized (lock) {
+                while (pendingLength == 0 && pendingSnapshot == null && !closing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        closing = true;
+                    }
+                }
+                if (pendingLength == 0 && pendingSnapshot == null) {
+                    return;
+                }
+                byte[] full = pending;
+                pending = batch;
+                batch = full;
+                length = pendingLength;
+                pendingLength = 0;
+                snapshot = pendingSnapshot;
+                snapshotPosition = pendingSnapshotPosition;
+                snapshotSeed = pendingSnapshotSeed;
+                pendingSnapshot = null;
+            }
+            try {
+                writeFully(channel, batch, length);
+                channel.force(false);
+                if (snapshot != null) {
+                    Snapshot.write(directory, snapshotPosition, snapshotSeed, snapshot);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                durable += length;
+                syncs++;
+                if (snapshot != null) {
+                    snapshots++;
+                }
+                lock.notifyAll();
+            }
+            // Lets commands gather for a moment so a burst of them shares one fsync
+            LockSupport.parkNanos(COMMIT_INTERVAL_NANOS);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset){
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static <E extends Enum<E>> E enumAt(E[] values, int ordinal) throws IOException {
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown setting " + ordinal + " in journal header");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Class holding a snapshot read back from disk.
+     */
+    private static final class Snapshot {
+        private final long position;
+        private final long seed;
+        private final byte[] state;
+
+        private Snapshot(long position, long seed, byte[] state){
+            this.position = position;
+            this.seed = seed;
+            this.state = state;
+        }
+
+        /**
+         * @return the snapshot in the file, or null if there is none or it is damaged.
+         */
+        static Snapshot read(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+                byte[] magic = new byte[SNAPSHOT_MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, SNAPSHOT_MAGIC) || in.readUnsignedByte() != VERSION) {
+                    return null;
+                }
+                long position = in.readLong();
+                long seed = in.readLong();
+                int length = in.readInt();
+                if (length < 0 || length > in.available() - 4) {
+                    return null;
+                }
+                byte[] state = new byte[length];
+                in.readFully(state);
+                CRC32 crc = new CRC32();
+                crc.update(state);
+                return in.readInt() == (int) crc.getValue() ? new Snapshot(position, seed, state) : null;
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Writes a snapshot next to the journal and moves it into place in one step, so a crash leaves either the old
+         * snapshot or the new one.
+         */
+        static void write(Path directory, long position, long seed, byte[] state) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 29);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(SNAPSHOT_MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(position);
+            out.writeLong(seed);
+            out.writeInt(state.length);
+            out.write(state);
+            CRC32 crc = new CRC32();
+            crc.update(state);
+            out.writeInt((int) crc.getValue());
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, bytes.toByteArray(), bytes.size());
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        GameState newGame() throws IOException {
+            try {
+                return new GameState(new DataInputStream(new ByteArrayInputStream(state)), new RandomStreams(seed));
+            } catch (EOFException e) {
+                throw new IOException("Snapshot is truncated", e);
+            }
+        }
+    }
+}
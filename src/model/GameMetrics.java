@@ -0,0 +1,255 @@
+package model;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class holding counters and latency histograms for the game's hot paths, shared by every game in the process and
+ * published as a JMX MBean.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -Dmaze.metrics=true}. The switch is a static final field, so
+ * when it is off the JIT drops the timing code altogether. When it is on, recording a phase reads the clock and bumps
+ * four slots of fixed atomic arrays, so it never allocates. Latencies go into histograms with one bucket per power of
+ * two nanoseconds, which is coarse but good enough to tell a slow tail from a slow average. Each timed phase also has a
+ * matching Flight Recorder event in {@link GameEvents}, which costs nothing unless a recording asks for it.
+ */
+public final class GameMetrics implements GameMetricsMBean {
+    /**
+     * The timed phases. Everything but maze generation happens on every game tick.
+     */
+    public enum Phase {
+        GENERATE_VALID_MAZE, ADD_CYCLES, PLAYER_MOVE, MOVE_CATS, REVEAL_CELLS, PRINT_MAZE
+    }
+
+    /**
+     * The plain counters.
+     */
+    public enum Counter {
+        /** Mazes thrown away by the validated generator. */
+        MAZE_RETRIES,
+        /** Random cells drawn for spawning the cheese and cats. */
+        SPAWN_DRAWS,
+        /** Cheese positions tried against the fairness rules. */
+        CHEESE_SPAWN_ATTEMPTS
+    }
+
+    public static final boolean ENABLED = Boolean.getBoolean("maze.metrics");
+    public static final String OBJECT_NAME = "model:type=GameMetrics";
+    private static final int BUCKETS = 64;
+    private static final Phase[] PHASES = Phase.values();
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray totalNanos = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray maxNanos = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray histogram = new AtomicLongArray(PHASES.length * BUCKETS);
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    private GameMetrics(){
+    }
+
+    /**
+     * @return the metrics shared by every game.
+     */
+    public static GameMetrics get(){
+        return INSTANCE;
+    }
+
+    /**
+     * Method which starts timing a phase.
+     * @return the time to pass to record, or 0 when metrics are off.
+     */
+    public static long start(){
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Method which finishes timing a phase started with start.
+     * @param phase the phase that ran.
+     * @param start what start returned.
+     */
+    public static void record(Phase phase, long start){
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int index = phase.ordinal();
+        INSTANCE.counts.incrementAndGet(index);
+        INSTANCE.totalNanos.addAndGet(index, nanos);
+        INSTANCE.histogram.incrementAndGet(index * BUCKETS + bucket(nanos));
+        long max = INSTANCE.maxNanos.get(index);
+        while (nanos > max && !INSTANCE.maxNanos.weakCompareAndSetVolatile(index, max, nanos)) {
+            max = INSTANCE.maxNanos.get(index);
+        }
+    }
+
+    /**
+     * Method which adds to a counter.
+     * @param counter the counter.
+     * @param amount how much to add.
+     */
+    public static void count(Counter counter, long amount){
+        if (ENABLED) {
+            INSTANCE.counters.addAndGet(counter.ordinal(), amount);
+        }
+    }
+
+    /**
+     * Method which publishes the metrics on the platform MBean server, if metrics are on and they are not published
+     * already.
+     */
+    public static synchronized void register(){
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot publish game metrics", e);
+        }
+    }
+
+    private static int bucket(long nanos){
+        return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    @Override
+    public boolean isEnabled(){
+        return ENABLED;
+    }
+
+    @Override
+    public String[] getPhases(){
+        String[] names = new String[PHASES.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = PHASES[i].name();
+        }
+        return names;
+    }
+
+    @Override
+    public long[] getCounts(){
+        return snapshot(counts);
+    }
+
+    @Override
+    public double[] getMeanNanos(){
+        double[] means = new double[PHASES.length];
+        for (int i = 0; i < means.length; i++) {
+            long count = counts.get(i);
+            means[i] = count == 0 ? 0 : (double) totalNanos.get(i) / count;
+        }
+        return means;
+    }
+
+    @Override
+    public long[] getMaxNanos(){
+        return snapshot(maxNanos);
+    }
+
+    @Override
+    public long[] getPercentileNanos(double percentile){
+        long[] values = new long[PHASES.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = percentile(PHASES[i], percentile);
+        }
+        return values;
+    }
+
+    /**
+     * @param phase the phase.
+     * @param percentile between 0 and 100.
+     * @return the upper bound of the histogram bucket holding the percentile, in nanoseconds, or 0 if nothing has been
+     * recorded.
+     */
+    public long percentile(Phase phase, double percentile){
+        int base = phase.ordinal() * BUCKETS;
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += histogram.get(base + b);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram.get(base + b);
+            if (seen >= Math.max(1, rank)) {
+                // The bucket's upper bound, but never more than the slowest time seen
+                return Math.min(b == 63 ? Long.MAX_VALUE : (2L << b) - 1, maxNanos.get(phase.ordinal()));
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @param counter the counter.
+     * @return its current value.
+     */
+    public long getCount(Counter counter){
+        return counters.get(counter.ordinal());
+    }
+
+    @Override
+    public long getMazeRetries(){
+        return getCount(Counter.MAZE_RETRIES);
+    }
+
+    @Override
+    public long getSpawnDraws(){
+        return getCount(Counter.SPAWN_DRAWS);
+    }
+
+    @Override
+    public long getCheeseSpawnAttempts(){
+        return getCount(Counter.CHEESE_SPAWN_ATTEMPTS);
+    }
+
+    @Override
+    public void reset(){
+        for (int i = 0; i < PHASES.length; i++) {
+            counts.set(i, 0);
+            totalNanos.set(i, 0);
+            maxNanos.set(i, 0);
+        }
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    @Override
+    public String describe(){
+        StringBuilder text = new StringBuilder();
+        for (Phase phase : PHASES) {
+            int i = phase.ordinal();
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            text.append(String.format("%-20s %10d calls, mean %10.3f us, p50 <= %10.3f us, p99 <= %10.3f us,"
+                            + " max %10.3f us%n", phase, count, totalNanos.get(i) / 1e3 / count,
+                    percentile(phase, 50) / 1e3, percentile(phase, 99) / 1e3, maxNanos.get(i) / 1e3));
+        }
+        for (Counter counter : Counter.values()) {
+            text.append(String.format("%-20s %10d%n", counter, getCount(counter)));
+        }
+        return text.toString();
+    }
+
+    private static long[] snapshot(AtomicLongArray array){
+        long[] values = new long[array.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i);
+        }
+        return values;
+    }
+}
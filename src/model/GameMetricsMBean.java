@@ -0,0 +1,62 @@
+package model;
+
+/**
+ * Management interface of {@link GameMetrics}. The per phase arrays are in the order of {@link #getPhases()}.
+ */
+public interface GameMetricsMBean {
+    /**
+     * @return true if the JVM was started with -Dmaze.metrics=true, otherwise nothing is ever recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return the names of the timed phases.
+     */
+    String[] getPhases();
+
+    /**
+     * @return how many times each phase ran.
+     */
+    long[] getCounts();
+
+    /**
+     * @return the mean time of each phase, in nanoseconds.
+     */
+    double[] getMeanNanos();
+
+    /**
+     * @return the longest time of each phase, in nanoseconds.
+     */
+    long[] getMaxNanos();
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return an upper bound on the given percentile of each phase, in nanoseconds, to within a factor of two.
+     */
+    long[] getPercentileNanos(double percentile);
+
+    /**
+     * @return how many generated mazes the validated generator threw away.
+     */
+    long getMazeRetries();
+
+    /**
+     * @return how many random cells were drawn to spawn the cheese and cats.
+     */
+    long getSpawnDraws();
+
+    /**
+     * @return how many cheese positions were tried against the fairness rules.
+     */
+    long getCheeseSpawnAttempts();
+
+    /**
+     * Sets every count and histogram back to zero.
+     */
+    void reset();
+
+    /**
+     * @return a table of every phase that ran and every counter.
+     */
+    String describe();
+}
@@ -0,0 +1,244 @@
+package model;
+
+/**
+ * Class holding the settings a game is started with, read from the command line.
+ */
+public class GameOptions {
+    private int width = MazeGenerator.DEFAULT_WIDTH;
+    private int height = MazeGenerator.DEFAULT_HEIGHT;
+    private GenerationMode generationMode = GenerationMode.VALIDATED;
+    private boolean ansi;
+    private int catCount = 3;
+    private CatBehaviour catBehaviour = CatBehaviour.RANDOM;
+    private Long seed;
+    private String recordPath;
+    private String replayPath;
+    private String corpusPath;
+    private int poolSize;
+    private int realtimeMillis;
+    private int catThreads;
+    private boolean endless;
+    private String journalPath;
+    private int spectatePort = -1;
+
+    private GameOptions(){
+    }
+
+    /**
+     * Creates options for a game with the given settings, as read back from a replay.
+     */
+    GameOptions(int width, int height, GenerationMode generationMode, int catCount, CatBehaviour catBehaviour){
+        this.width = width;
+        this.height = height;
+        this.generationMode = generationMode;
+        this.catCount = catCount;
+        this.catBehaviour = catBehaviour;
+    }
+
+    /**
+     * Parses command line arguments of the form --width N, --height N, --generator validated|constructive|parallel,
+     * --cats N, --ai random|pursuit, --seed N, --record FILE, --replay FILE
+     * --corpus FILE, --pool N, --realtime MS, --cat-threads N, --endless, --journal DIR and --spectate PORT.
+     * @param args the arguments passed to main.
+     * @return the parsed options, with defaults for anything not given.
+     * @throws IllegalArgumentException if an argument is unknown or its value is missing or malformed.
+     */
+    public static GameOptions parse(String[] args){
+        GameOptions options = new GameOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--width":
+                    options.width = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--height":
+                    options.height = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--generator":
+                    options.generationMode = GenerationMode.valueOf(Arguments.value(args, ++i, arg).toUpperCase());
+                    break;
+                case "--ansi":
+                    options.ansi = true;
+                    break;
+                case "--cats":
+                    options.catCount = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--ai":
+                    options.catBehaviour = CatBehaviour.valueOf(Arguments.value(args, ++i, arg).toUpperCase());
+                    break;
+                case "--seed":
+                    options.seed = Arguments.parseLong(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--record":
+                    options.recordPath = Arguments.value(args, ++i, arg);
+                    break;
+                case "--replay":
+                    options.replayPath = Arguments.value(args, ++i, arg);
+                    break;
+                case "--corpus":
+                    options.corpusPath = Arguments.value(args, ++i, arg);
+                    break;
+                case "--pool":
+                    options.poolSize = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--realtime":
+                    options.realtimeMillis = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--cat-threads":
+                    options.catThreads = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--endless":
+                    options.endless = true;
+                    break;
+                case "--journal":
+                    options.journalPath = Arguments.value(args, ++i, arg);
+                    break;
+                case "--spectate":
+                    options.spectatePort = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.recordPath != null && (options.corpusPath != null || options.poolSize > 0)) {
+            // A replay rebuilds its maze from the seed, which mazes from a corpus or pool do not come from
+            throw new IllegalArgumentException("--record cannot be combined with --corpus or --pool");
+        }
+        if (options.recordPath != null && options.realtimeMillis > 0) {
+            // A replay keeps the order of the moves but not when they came between the cats' moves
+            throw new IllegalArgumentException("--record cannot be combined with --realtime");
+        }
+        if (options.recordPath != null && options.catThreads > 0) {
+            // Replays do not store how the cats drew their randomness
+            throw new IllegalArgumentException("--record cannot be combined with --cat-threads");
+        }
+        if (options.endless && (options.recordPath != null || options.corpusPath != null || options.poolSize > 0
+                || options.realtimeMillis > 0)) {
+            // The endless maze is built as the player goes, so there is no whole maze to record, load or pool
+            throw new IllegalArgumentException("--endless cannot be combined with --record, --corpus, --pool or"
+                    + " --realtime");
+        }
+        if (options.journalPath != null && (options.recordPath != null || options.corpusPath != null
+                || options.poolSize > 0 || options.realtimeMillis > 0 || options.endless)) {
+            // A journal rebuilds the maze from the seed and reseeds the game at every snapshot, so a replay of the
+            // same seed would not play out the same
+            throw new IllegalArgumentException("--journal cannot be combined with --record, --corpus, --pool,"
+                    + " --realtime or --endless");
+        }
+        if (options.spectatePort != -1 && (options.spectatePort < 0 || options.spectatePort > 65535)) {
+            throw new IllegalArgumentException("--spectate expects a port, got " + options.spectatePort);
+        }
+        if (options.catThreads < 0) {
+            throw new IllegalArgumentException("--cat-threads expects a number of threads, got " + options.catThreads);
+        }
+        if (options.realtimeMillis < 0) {
+            throw new IllegalArgumentException("--realtime expects a tick of at least 1 ms, got "
+                    + options.realtimeMillis);
+        }
+        return options;
+    }
+
+    /**
+     * @return a one line summary of the accepted arguments.
+     */
+    public static String usage(){
+        return "Usage: Game [--width N] [--height N] [--generator validated|constructive|parallel] [--ansi] [--cats N]"
+                + " [--ai random|pursuit] [--seed N] [--record FILE] [--replay FILE]"
+                + " [--corpus FILE] [--pool N] [--realtime MS] [--cat-threads N] [--endless] [--journal DIR]"
+                + " [--spectate PORT]";
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    public GenerationMode getGenerationMode(){
+        return generationMode;
+    }
+
+    public boolean isAnsi(){
+        return ansi;
+    }
+
+    public int getCatCount(){
+        return catCount;
+    }
+
+    public CatBehaviour getCatBehaviour(){
+        return catBehaviour;
+    }
+
+    /**
+     * @return the session seed, or null if a random one should be picked.
+     */
+    public Long getSeed(){
+        return seed;
+    }
+
+    /**
+     * @return the file to record a replay to, or null.
+     */
+    public String getRecordPath(){
+        return recordPath;
+    }
+
+    /**
+     * @return the replay file to play back instead of playing, or null.
+     */
+    public String getReplayPath(){
+        return replayPath;
+    }
+
+    /**
+     * @return the maze corpus to take the maze from instead of generating one, or null.
+     */
+    public String getCorpusPath(){
+        return corpusPath;
+    }
+
+    /**
+     * @return how many mazes to keep generated ahead of time, 0 to generate on demand.
+     */
+    public int getPoolSize(){
+        return poolSize;
+    }
+
+    /**
+     * @return how often the cats move in real-time play, in milliseconds, or 0 to play turn by turn.
+     */
+    public int getRealtimeMillis(){
+        return realtimeMillis;
+    }
+
+    /**
+     * @return how many threads propose the cats' moves in parallel, or 0 to move the cats one after another.
+     */
+    public int getCatThreads(){
+        return catThreads;
+    }
+
+    /**
+     * @return true to play an endless maze that goes down forever, of which only the width setting is used.
+     */
+    public boolean isEndless(){
+        return endless;
+    }
+
+    /**
+     * @return the directory to keep the game's journal in so it can be carried on after a crash, or null.
+     */
+    public String getJournalPath(){
+        return journalPath;
+    }
+
+    /**
+     * @return the port spectators can watch the game on, 0 for any free port, or -1 if the game is not broadcast.
+     */
+    public int getSpectatePort(){
+        return spectatePort;
+    }
+}
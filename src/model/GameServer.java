@@ -0,0 +1,204 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for hosting many independent games on a local TCP port, one {@link GameSession} per connection.
+ * <p>
+ * Every session runs on its own virtual thread, so a player waiting to type their move only parks a virtual thread
+ * and no platform thread is tied to any player. A session owns its game, a small input buffer and a small output
+ * buffer, and nothing else. A semaphore caps how many sessions run at once so memory stays bounded, and a socket read
+ * timeout closes sessions whose player has gone quiet.
+ */
+public class GameServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 4242;
+    private static final int INPUT_BUFFER = 256;
+    private static final int OUTPUT_BUFFER = 4096;
+    private static final int BACKLOG = 1024;
+
+    private final GameOptions options;
+    private final int maxSessions;
+    private final int idleTimeoutMillis;
+    private final Semaphore sessions;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MazeSource mazes;
+    private final AtomicLong connections = new AtomicLong();
+
+    /**
+     * Opens the port on the loopback address. Sessions are served once {@link #serve()} is called.
+     * @param port the port to listen on, 0 for any free port.
+     * @param maxSessions how many sessions may run at once; further connections are turned away.
+     * @param idleTimeoutSeconds how long a session may wait for a move before it is closed.
+     * @param options the settings every game is started with.
+     * @throws IOException if the port cannot be opened or the corpus cannot be read.
+     */
+    public GameServer(int port, int maxSessions, int idleTimeoutSeconds, GameOptions options) throws IOException {
+        if (maxSessions < 1 || idleTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("Max sessions and idle timeout must be at least 1, got "
+                    + maxSessions + " and " + idleTimeoutSeconds);
+        }
+        if (options.getRecordPath() != null || options.getReplayPath() != null || options.getRealtimeMillis() > 0
+                || options.isEndless() || options.getJournalPath() != null || options.getSpectatePort() >= 0) {
+            // Sessions are plain turn by turn games that keep nothing once the player leaves
+            throw new IllegalArgumentException("--record, --replay, --realtime, --endless, --journal and --spectate"
+                    + " cannot be used by the server");
+        }
+        this.options = options;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+        this.sessions = new Semaphore(maxSessions);
+        this.mazes = new MazeSource(options);
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort(){
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return how many sessions are being played right now.
+     */
+    public int getActiveSessions(){
+        return maxSessions - sessions.availablePermits();
+    }
+
+    /**
+     * @return how many connections have been accepted since the server started.
+     */
+    public long getConnections(){
+        return connections.get();
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a session for each one.
+     */
+    public void serve(){
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                System.out.println("Cannot accept connection: " + e.getMessage());
+                continue;
+            }
+            long connection = connections.incrementAndGet();
+            if (!sessions.tryAcquire()) {
+                executor.execute(() -> refuse(socket));
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    play(socket, connection);
+                } finally {
+                    sessions.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a one line summary of the server's counters, with the maze pool's if it has one.
+     */
+    public String describe(){
+        return "Server: " + getConnections() + " connections, " + getActiveSessions() + " playing"
+                + (mazes.getPool() != null ? ", maze pool " + mazes.getPool().describe() : "");
+    }
+
+    /**
+     * Stops accepting connections and closes the pool and corpus. Running sessions end when their sockets do.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+        mazes.close();
+    }
+
+    private void play(Socket socket, long connection){
+        try (socket) {
+            socket.setSoTimeout(idleTimeoutMillis);
+            socket.setTcpNoDelay(true);
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER), false,
+                    StandardCharsets.US_ASCII);
+            RandomStreams streams = options.getSeed() != null
+                    ? new RandomStreams(options.getSeed() + connection) : RandomStreams.withRandomSeed();
+            GameState gameState = mazes.newGame(streams);
+            GameSession session = new GameSession(gameState, new BufferedInputStream(socket.getInputStream(),
+                    INPUT_BUFFER), out, options.isAnsi(), null);
+            try {
+                session.run();
+                out.println("Session seed: " + streams.getSeed());
+            } catch (SocketTimeoutException e) {
+                out.println();
+                out.println("No move for " + idleTimeoutMillis / 1000 + " seconds, goodbye!");
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The player hung up, nothing left to do
+        }
+    }
+
+    private static void refuse(Socket socket){
+        try (socket) {
+            PrintStream out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.US_ASCII);
+            out.println("Server full, please try again later.");
+            out.flush();
+        } catch (IOException e) {
+            // Nothing to tell a client that is already gone
+        }
+    }
+
+    /**
+     * Starts a server. Takes --port N, --max-sessions N and --idle-timeout SECONDS, followed by any of the game options
+     * except --record, --replay, --realtime, --endless, --journal and --spectate.
+     */
+    public static void main(String[] args) {
+        ServerOptions options;
+        GameServer server;
+        try {
+            options = ServerOptions.parse(args, DEFAULT_PORT);
+            server = new GameServer(options.getPort(), options.getMaxSessions(), options.getIdleTimeoutSeconds(),
+                    options.getGameOptions());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(ServerOptions.usage("GameServer"));
+            System.out.println(GameOptions.usage());
+            return;
+        } catch (IOException e) {
+            System.out.println("Cannot start server: " + e.getMessage());
+            return;
+        }
+        GameMetrics.register();
+        System.out.println("Listening on port " + server.getPort() + " for up to " + options.getMaxSessions() + " sessions.");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+            System.out.println(server.describe());
+        }));
+        server.serve();
+    }
+}
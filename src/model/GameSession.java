@@ -0,0 +1,222 @@
+package model;
+
+import view.UI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * Class responsible for playing one game with one player: reads commands a line at a time, applies them and draws the
+ * maze after every move. Used for the console game and for every connection to the game server, so the line protocol
+ * is the same everywhere: W, A, S and D move, ? shows the help, H gives a hint and C and M are the cheat codes.
+ * <p>
+ * Commands are plain ASCII, so lines are read a byte at a time into a fixed size buffer and anything past its end is
+ * dropped. A session never holds more than one short line however much a client sends, and the hint search uses a
+ * small table, so thousands of sessions can share one server.
+ */
+public class GameSession {
+    private static final int HINT_DEPTH = 3;
+    private static final int HINT_TABLE_BITS = 12;
+    private static final int MAX_LINE = 64;
+
+    private GameState gameState;
+    private final EndlessGame endless;
+    private final InputStream in;
+    private final PrintStream out;
+    private final UI ui;
+    private final char[] line = new char[MAX_LINE];
+    private CommandLog recorder;
+    private Autoplayer hints;
+    private SpectatorHub spectators;
+
+    /**
+     * @param gameState the game to play.
+     * @param in where the player's commands come from, read a byte at a time so it should be buffered.
+     * @param out where the maze and messages are printed.
+     * @param ansi true to redraw only the cells that changed between frames using ANSI escape codes.
+     * @param recorder where commands are recorded, such as a replay or a journal, or null.
+     */
+    public GameSession(GameState gameState, InputStream in, PrintStream out, boolean ansi, CommandLog recorder){
+        this(gameState, null, in, out, ansi, recorder);
+    }
+
+    /**
+     * Creates a session that plays an endless maze, which cannot be recorded.
+     * @param endless the game to play.
+     * @param in where the player's commands come from, read a byte at a time so it should be buffered.
+     * @param out where the maze and messages are printed.
+     * @param ansi true to redraw only the cells that changed between frames using ANSI escape codes.
+     */
+    public GameSession(EndlessGame endless, InputStream in, PrintStream out, boolean ansi){
+        this(endless.getGameState(), endless, in, out, ansi, null);
+    }
+
+    private GameSession(GameState gameState, EndlessGame endless, InputStream in, PrintStream out, boolean ansi,
+                        CommandLog recorder){
+        this.gameState = gameState;
+        this.endless = endless;
+        this.in = in;
+        this.out = out;
+        this.ui = new UI(out, ansi);
+        this.recorder = recorder;
+    }
+
+    /**
+     * @param spectators where every change to the game is broadcast, or null.
+     */
+    public void setSpectators(SpectatorHub spectators){
+        this.spectators = spectators;
+    }
+
+    /**
+     * Runs the game loop until the game is won, lost or input runs out.
+     * @return the result that ended the game, or null if input ran out first.
+     * @throws IOException if reading a command fails, for example because the player was idle for too long.
+     */
+    public StepResult run() throws IOException {
+        ui.startingMenu();
+        ui.helpMenu();
+
+        boolean validMove = true;
+        boolean skipPrint = false;
+        spectate(null);
+        while (true) {
+            if(validMove && !skipPrint){
+                ui.printMaze(gameState);
+                out.println("Cheese collected: " + gameState.getCheeseCollected() + " of " + gameState.getCheeseToWin());
+                if (endless != null) {
+                    out.println("Depth: " + endless.getDepth() + " (deepest " + endless.getMaxDepth() + ")");
+                }
+            }
+            out.println("Enter your move [WASDH?]: ");
+            out.flush();
+            int length = readLine();
+            if (length < 0) {
+                return null;
+            }
+
+            if(length == 0){
+                out.println("Invalid move. Please enter just A (left), S (down), D (right), or W (up).");
+                skipPrint = true;
+                continue;
+            }
+
+            char move = Character.toUpperCase(line[0]);
+            validMove = true;
+            skipPrint = false;
+
+            if (move == '?') {
+                ui.helpMenu();
+                skipPrint = true;
+                continue;
+            }
+
+
+            if (move == 'C'){
+                out.println("Changing cheese to win from " + gameState.getCheeseToWin() + " to 1.");
+                gameState.changeCheeseToWin();
+                if (hints != null) {
+                    // Positions searched under the old target would be scored by the wrong rule
+                    hints.clearTable();
+                }
+                record(move);
+                spectate(null);
+                continue;
+            }
+            if(move == 'H'){
+                if (hints == null) {
+                    hints = new Autoplayer(gameState, HINT_DEPTH, HINT_TABLE_BITS);
+                }
+                char hint = hints.bestMove();
+                out.println(hint == 0 ? "No hint, you cannot move!" : "Hint: try " + hint + ".");
+                skipPrint = true;
+                continue;
+            }
+            if(move == 'M'){
+                gameState.revealEntireMaze();
+                out.println("The entire maze has been revealed!");
+                record(move);
+                spectate(null);
+                continue;
+            }
+
+            StepResult result;
+            if (endless != null) {
+                result = endless.step(move);
+                if (endless.getGameState() != gameState) {
+                    // The window moved, so the hints have to search the new one
+                    gameState = endless.getGameState();
+                    hints = null;
+                }
+            } else {
+                result = gameState.step(move);
+            }
+            if (result != StepResult.INVALID) {
+                record(move);
+                spectate(result);
+            }
+            if (result == StepResult.INVALID) {
+                out.println("Invalid move. Please enter just A (left), S (down), D (right), or W (up).");
+                validMove = false;
+            } else if (result == StepResult.BLOCKED) {
+                out.println("Invalid move: you cannot move through walls!");
+                validMove = false;
+            } else if (result == StepResult.WON) {
+                out.println("Game Over! You Win!");
+                out.flush();
+                return result;
+            } else if (result == StepResult.LOST) {
+                out.println("Game Over!");
+                out.flush();
+                return result;
+            } else {
+                out.println("cats Moved");
+            }
+        }
+    }
+
+    /**
+     * Reads one line into the line buffer, keeping at most MAX_LINE characters and dropping the rest.
+     * @return the number of characters kept, or -1 at the end of input.
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        int c = in.read();
+        if (c < 0) {
+            return -1;
+        }
+        while (c >= 0 && c != '\n') {
+            if (c != '\r' && length < MAX_LINE) {
+                line[length++] = (char) c;
+            }
+            c = in.read();
+        }
+        return length;
+    }
+
+    /**
+     * Broadcasts the game as it is now to the spectators, if anyone is watching.
+     * @param result the result of the last move, or null if it was not a move.
+     */
+    private void spectate(StepResult result){
+        if (spectators != null) {
+            spectators.publish(gameState, result == StepResult.WON ? 'W' : result == StepResult.LOST ? 'L' : 'P');
+        }
+    }
+
+    /**
+     * Records a command, giving up on recording if it cannot be written.
+     */
+    private void record(char command){
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.record(command);
+        } catch (IOException e) {
+            out.println("Recording stopped: " + e.getMessage());
+            recorder = null;
+        }
+    }
+}
@@ -1,141 +1,483 @@
 package model;
 
-import view.UI;
-
-import java.util.Arrays;
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 /**
  * Class responsible for managing the game appearance and state
  */
 public class GameState {
-    private char[][] maze;
+    private static final int CHEESE_SPAWN_ATTEMPTS = 64;
+    private final MazeGrid maze;
     private Player player;
     private Cheese cheese;
-    private Cat[] cats;
-    private final int WIDTH = 20;
-    private final int HEIGHT = 15;
-    private final char OPEN = ' ';
-    private final Random random = new Random();
-    private UI ui;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private RandomGenerator random;
+    private RandomGenerator catRandom;
     private RandomMovementGenerator randomMovementGenerator;
-    private int[][] lastCatPositions;
+    private final int[] catXs;
+    private final int[] catYs;
+    private final int[] lastCatXs;
+    private final int[] lastCatYs;
+    private final int[] catsAt;
     private int cheeseCollected = 0;
     private int cheeseToWin = 5;
-    private boolean[][] revealedCells;
+    private final FogOfWar fog;
+    private final FreeCellIndex freeCells;
+    private CatBehaviour catBehaviour = CatBehaviour.RANDOM;
+    private FlowField flowField;
+    private ParallelCatMover parallelCats;
+    private int minCheeseDistance = 8;
+    private JunctionGraph.Distances playerDistances;
+    private JunctionGraph.Distances catDistances;
+    private int[] undo = new int[64];
+    private int undoSize;
 
 
     public GameState(char[][] maze){
-        this.maze = maze;
+        this(MazeGrid.fromChars(maze));
+    }
 
-        this.randomMovementGenerator = new RandomMovementGenerator(this);
+    public GameState(MazeGrid maze){
+        this(maze, 3);
+    }
 
-        this.lastCatPositions = new int[3][2];
+    public GameState(MazeGrid maze, int catCount){
+        this(maze, catCount, RandomStreams.withRandomSeed());
+    }
 
-        this.revealedCells = new boolean[HEIGHT][WIDTH];
-        for(int i = 0; i < HEIGHT; i++){
-            Arrays.fill(revealedCells[i], false);
+    /**
+     * Creates a game on the given maze. The first three cats start in the corners furthest from the player, any others
+     * start on random open cells. Cats are kept as parallel arrays of coordinates rather than objects, and a grid
+     * counts the cats on every cell, so finding a cat on a cell takes the same time however many cats there are and
+     * cats sharing a cell never hide each other.
+     * @param maze the walls of the maze.
+     * @param catCount how many cats chase the player.
+     * @param streams the session's randomness, of which the spawning and cat streams are used.
+     */
+    public GameState(MazeGrid maze, int catCount, RandomStreams streams){
+        if (catCount < 0) {
+            throw new IllegalArgumentException("Cat count cannot be negative: " + catCount);
         }
+        this.maze = maze;
+        this.WIDTH = maze.getWidth();
+        this.HEIGHT = maze.getHeight();
+        this.random = streams.getSpawning();
+        this.catRandom = streams.getCats();
+
+        this.randomMovementGenerator = new RandomMovementGenerator(this, catRandom);
 
-        ui = new UI();
+        this.catXs = new int[catCount];
+        this.catYs = new int[catCount];
+        this.lastCatXs = new int[catCount];
+        this.lastCatYs = new int[catCount];
+        this.catsAt = new int[WIDTH * HEIGHT];
+
+        this.fog = new FogOfWar(WIDTH, HEIGHT);
+        this.freeCells = new FreeCellIndex(maze);
 
         player = new Player(new int[]{1,1});
+        freeCells.take(1, 1);
+
+        int cheeseCell = getRandomCell();
+        cheese = new Cheese(new int[]{cheeseCell % WIDTH, cheeseCell / WIDTH});
+        freeCells.take(cheese.getX(), cheese.getY());
+
+        int[][] corners = {{WIDTH - 2, 1}, {1, HEIGHT - 2}, {WIDTH - 2, HEIGHT - 2}};
+        for (int i = 0; i < catCount; i++) {
+            if (i < corners.length) {
+                catXs[i] = corners[i][0];
+                catYs[i] = corners[i][1];
+            } else {
+                int cell = getRandomCell();
+                catXs[i] = cell % WIDTH;
+                catYs[i] = cell / WIDTH;
+            }
+        }
+        // Counted only once all are placed, so cats may start on the same cell as they always could
+        for (int i = 0; i < catCount; i++) {
+            catsAt[catYs[i] * WIDTH + catXs[i]]++;
+            freeCells.take(catXs[i], catYs[i]);
+        }
+    }
 
-        cheese = new Cheese(getRandomPosition());
+    /**
+     * Creates the game that carries on from another one after the window onto an endless maze has moved. Everything
+     * keeps its place in the world, so positions move by the same number of rows as the window. A cat or the cheese
+     * that ends up outside the new window is put on a random free cell instead. The score, rules, randomness and the
+     * fog on the rows both windows share carry over.
+     * @param previous the game before the window moved.
+     * @param maze the new window, as wide and as high as the old one.
+     * @param rowShift how many rows the window moved down, negative if it moved up.
+     */
+    GameState(GameState previous, MazeGrid maze, int rowShift){
+        this.maze = maze;
+        this.WIDTH = maze.getWidth();
+        this.HEIGHT = maze.getHeight();
+        this.random = previous.random;
+        this.catRandom = previous.catRandom;
+        this.randomMovementGenerator = new RandomMovementGenerator(this, catRandom);
+
+        int catCount = previous.catXs.length;
+        this.catXs = new int[catCount];
+        this.catYs = new int[catCount];
+        this.lastCatXs = new int[catCount];
+        this.lastCatYs = new int[catCount];
+        this.catsAt = new int[WIDTH * HEIGHT];
+
+        this.fog = previous.fog.shifted(rowShift);
+        this.freeCells = new FreeCellIndex(maze);
+        this.cheeseCollected = previous.cheeseCollected;
+        this.cheeseToWin = previous.cheeseToWin;
+        this.catBehaviour = previous.catBehaviour;
+        this.minCheeseDistance = previous.minCheeseDistance;
+
+        player = new Player(new int[]{previous.player.getX(), previous.player.getY() - rowShift});
+        freeCells.take(player.getX(), player.getY());
+
+        // Cats still in the window are placed first so nothing that has to respawn lands on them
+        boolean[] respawn = new boolean[catCount];
+        for (int i = 0; i < catCount; i++) {
+            int catY = previous.catYs[i] - rowShift;
+            int lastY = previous.lastCatYs[i] - rowShift;
+            respawn[i] = !isValidMove(previous.catXs[i], catY);
+            if (!respawn[i]) {
+                catXs[i] = previous.catXs[i];
+                catYs[i] = catY;
+                boolean lastInside = isValidMove(previous.lastCatXs[i], lastY);
+                lastCatXs[i] = lastInside ? previous.lastCatXs[i] : catXs[i];
+                lastCatYs[i] = lastInside ? lastY : catY;
+                catsAt[catY * WIDTH + catXs[i]]++;
+                freeCells.take(catXs[i], catY);
+            }
+        }
 
-        cats = new Cat[3];
-        cats[0] = new Cat(new int[]{ WIDTH - 2,1});
-        cats[1] = new Cat(new int[]{1,HEIGHT - 2});
-        cats[2] = new Cat(new int[]{WIDTH - 2, HEIGHT - 2});
+        int cheeseY = previous.cheese.getY() - rowShift;
+        if (previous.cheese.getX() >= 0 && isValidMove(previous.cheese.getX(), cheeseY)) {
+            cheese = new Cheese(new int[]{previous.cheese.getX(), cheeseY});
+        } else {
+            int cheeseCell = getRandomCell();
+            cheese = new Cheese(new int[]{cheeseCell % WIDTH, cheeseCell / WIDTH});
+        }
+        freeCells.take(cheese.getX(), cheese.getY());
+
+        for (int i = 0; i < catCount; i++) {
+            if (respawn[i]) {
+                int cell = getRandomCell();
+                catXs[i] = lastCatXs[i] = cell % WIDTH;
+                catYs[i] = lastCatYs[i] = cell / WIDTH;
+                catsAt[cell]++;
+                freeCells.take(catXs[i], catYs[i]);
+            }
+        }
+        if (previous.parallelCats != null) {
+            setCatPool(previous.parallelCats.getPool());
+        }
+    }
 
+    /**
+     * Creates a game from a snapshot written by writeSnapshot. The game carries on exactly as the snapshotted one does
+     * after it is reseeded with the same streams.
+     * @param in the snapshot.
+     * @param streams the randomness to carry on with.
+     * @throws IOException if the snapshot cannot be read or is malformed.
+     */
+    GameState(DataInput in, RandomStreams streams) throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        if (width < MazeGenerator.MIN_SIZE || height < MazeGenerator.MIN_SIZE) {
+            throw new IOException("Bad maze size in snapshot: " + width + "x" + height);
+        }
+        this.maze = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int k = 0; k < maze.getWordsPerRow(); k++) {
+                maze.setWord(y, k, in.readLong());
+            }
+        }
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.random = streams.getSpawning();
+        this.catRandom = streams.getCats();
+        this.randomMovementGenerator = new RandomMovementGenerator(this, catRandom);
+
+        player = new Player(new int[]{in.readInt(), in.readInt()});
+        cheese = new Cheese(new int[]{in.readInt(), in.readInt()});
+        int catCount = in.readInt();
+        if (catCount < 0 || catCount > width * height * 4) {
+            throw new IOException("Bad cat count in snapshot: " + catCount);
+        }
+        this.catXs = new int[catCount];
+        this.catYs = new int[catCount];
+        this.lastCatXs = new int[catCount];
+        this.lastCatYs = new int[catCount];
+        this.catsAt = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < catCount; i++) {
+            catXs[i] = in.readInt();
+            catYs[i] = in.readInt();
+            lastCatXs[i] = in.readInt();
+            lastCatYs[i] = in.readInt();
+            if (!isValidMove(catXs[i], catYs[i])) {
+                throw new IOException("Cat on a wall in snapshot at " + catXs[i] + "," + catYs[i]);
+            }
+            catsAt[catYs[i] * WIDTH + catXs[i]]++;
+        }
+        if (!isValidMove(player.getX(), player.getY())) {
+            throw new IOException("Player on a wall in snapshot at " + player.getX() + "," + player.getY());
+        }
+        this.cheeseCollected = in.readInt();
+        this.cheeseToWin = in.readInt();
+        this.minCheeseDistance = in.readInt();
+        int behaviour = in.readUnsignedByte();
+        if (behaviour >= CatBehaviour.values().length) {
+            throw new IOException("Unknown cat behaviour in snapshot: " + behaviour);
+        }
+        this.catBehaviour = CatBehaviour.values()[behaviour];
+        this.fog = FogOfWar.read(in, width, height);
+        this.freeCells = FreeCellIndex.read(in, maze);
     }
 
     /**
-     * Method which creates a random position in maze
-     * @return random position in the maze
+     * Method which writes everything needed to carry the game on, except its randomness, which a snapshot's reader
+     * supplies fresh; call reseed with the same streams to make this game carry on the same way.
+     * @param out where the snapshot is written.
+     * @throws IOException if it cannot be written.
      */
-    private int[] getRandomPosition(){
-        int x;
-        int y;
-        do{
-            x = random.nextInt(maze[0].length - 2) + 1;
-            y = random.nextInt(maze.length - 2) + 1;
-        }while (maze[y][x] != OPEN || (x == player.getX() && y == player.getY()));
-        return new int[]{x,y};
+    void writeSnapshot(DataOutput out) throws IOException {
+        out.writeInt(WIDTH);
+        out.writeInt(HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int k = 0; k < maze.getWordsPerRow(); k++) {
+                out.writeLong(maze.getWord(y, k));
+            }
+        }
+        out.writeInt(player.getX());
+        out.writeInt(player.getY());
+        out.writeInt(cheese.getX());
+        out.writeInt(cheese.getY());
+        out.writeInt(catXs.length);
+        for (int i = 0; i < catXs.length; i++) {
+            out.writeInt(catXs[i]);
+            out.writeInt(catYs[i]);
+            out.writeInt(lastCatXs[i]);
+            out.writeInt(lastCatYs[i]);
+        }
+        out.writeInt(cheeseCollected);
+        out.writeInt(cheeseToWin);
+        out.writeInt(minCheeseDistance);
+        out.writeByte(catBehaviour.ordinal());
+        fog.write(out);
+        freeCells.write(out);
     }
 
     /**
-     * "Places" entities onto the maze
+     * Method which switches the game to new sources of randomness, keeping cats moving in parallel if they were.
+     * @param streams the randomness to carry on with, of which the spawning and cat streams are used.
      */
-    public void placeEntities(){
-        maze[player.getY()][player.getX()] = '@';
+    void reseed(RandomStreams streams){
+        random = streams.getSpawning();
+        catRandom = streams.getCats();
+        randomMovementGenerator = new RandomMovementGenerator(this, catRandom);
+        if (parallelCats != null) {
+            setCatPool(parallelCats.getPool());
+        }
+    }
 
-        maze[cheese.getY()][cheese.getX()] = '$';
+    /**
+     * Method which picks a random free cell from the free cell index, in constant time however full the maze is. If
+     * every open cell is taken, any open cell is picked instead.
+     * @return random cell in the maze, as y * WIDTH + x.
+     */
+    private int getRandomCell(){
+        GameMetrics.count(GameMetrics.Counter.SPAWN_DRAWS, 1);
+        int freeCount = freeCells.getFreeCount();
+        return freeCells.getCell(random.nextInt(freeCount > 0 ? freeCount : freeCells.getCellCount()));
+    }
 
-        Arrays.stream(cats)
-                .forEach(cat -> maze[cat.getY()][cat.getX()] = '!');
+    /**
+     * Method which brings the free cell index up to date for a cell whose occupants may have changed.
+     * @param x is the x coordinate of the cell, or -1 for off the board.
+     * @param y is the y coordinate of the cell.
+     */
+    private void updateFreeCell(int x, int y){
+        if (x < 0) {
+            return;
+        }
+        if (isOccupied(x, y)) {
+            freeCells.take(x, y);
+        } else {
+            freeCells.release(x, y);
+        }
     }
 
     /**
-     * Method which marks the perimeter cells as revealed and all surrounding cells to the player as revealed
-     * Revealed cells will have the actual contents of their cell printed, otherwise '.' will be outputted.
+     * Method which checks if an entity is standing on a cell.
+     * @param x is the x coordinate of the cell.
+     * @param y is the y coordinate of the cell.
+     * @return true if the player, a cat or the cheese is on the cell, false otherwise.
+     */
+    private boolean isOccupied(int x, int y){
+        if (x == player.getX() && y == player.getY()) {
+            return true;
+        }
+        if (cheese != null && x == cheese.getX() && y == cheese.getY()) {
+            return true;
+        }
+        return isCatAt(x, y);
+    }
+
+    /**
+     * Method which checks if at least one cat is on a cell, with a single look at the occupancy grid.
+     * @param x is the x coordinate of the cell.
+     * @param y is the y coordinate of the cell.
+     * @return true if a cat is on the cell, false otherwise.
+     */
+    public boolean isCatAt(int x, int y){
+        return catsAt[y * WIDTH + x] != 0;
+    }
+
+    /**
+     * @param x is the x coordinate of the cell.
+     * @param y is the y coordinate of the cell.
+     * @return how many cats are on the cell.
+     */
+    public int getCatCountAt(int x, int y){
+        return catsAt[y * WIDTH + x];
+    }
+
+    /**
+     * Method which marks all surrounding cells to the player as revealed. The perimeter is revealed when the game is
+     * created. Revealed cells will have the actual contents of their cell printed, otherwise '.' will be outputted.
      * @param playerX player current x position
      * @param playerY player current y position
      */
     public void revealCells(int playerX, int playerY){
+        long start = GameMetrics.start();
+        GameEvents.RevealCells event = null;
+        if (GameEvents.REVEAL_CELLS.isEnabled()) {
+            event = new GameEvents.RevealCells();
+            event.begin();
+        }
+        fog.revealAround(playerX, playerY);
+        if (event != null) {
+            event.revealed = fog.getRevealCount();
+            event.commit();
+        }
+        GameMetrics.record(GameMetrics.Phase.REVEAL_CELLS, start);
+    }
+
+    /**
+     * Method which checks if a cell has been revealed to the player.
+     * @param x is the x coordinate of the cell.
+     * @param y is the y coordinate of the cell.
+     * @return true if the cell is revealed, false otherwise.
+     */
+    public boolean isRevealed(int x, int y){
+        return fog.isRevealed(x, y);
+    }
 
-        for (int x = 0; x < WIDTH; x++) {
-            revealedCells[0][x] = true; // Top wall
-            revealedCells[HEIGHT - 1][x] = true; // Bottom wall
+    /**
+     * Method which returns what should be drawn for a cell. Entities are layered over the terrain: the player first,
+     * then cats, then the cheese.
+     * @param x is the x coordinate of the cell.
+     * @param y is the y coordinate of the cell.
+     * @return '@', '!', '$', '#' or ' ' depending on what occupies the cell.
+     */
+    public char getCell(int x, int y){
+        if (x == player.getX() && y == player.getY()) {
+            return '@';
         }
-        for (int y = 0; y < HEIGHT; y++) {
-            revealedCells[y][0] = true; // Left wall
-            revealedCells[y][WIDTH - 1] = true; // Right wall
+        if (isCatAt(x, y)) {
+            return '!';
         }
+        if (x == cheese.getX() && y == cheese.getY()) {
+            return '$';
+        }
+        return maze.isWall(x, y) ? '#' : ' ';
+    }
 
-        for(int y = -1; y <=1; y++){
-            for(int x = -1; x <= 1; x++){
-                if(x == 0 && y == 0){
-                    continue;
-                }
-                int newX = playerX + x;
-                int newY = playerY + y;
+    /**
+     * Advances the game by one player move. Moves the player, reveals the cells around them, checks for a win or a loss
+     * and then lets the cats take their turn. Does no console output, so any front end (or none) can drive it.
+     * @param move is the player's move (W,A,S,D)
+     * @return the outcome of the move.
+     */
+    public StepResult step(char move){
+        StepResult result = applyPlayerMove(move);
+        return result == StepResult.MOVED ? advanceCats() : result;
+    }
 
-                if (newX >= 0 && newX < WIDTH && newY >= 0 && newY < HEIGHT) {
-                    revealedCells[newY][newX] = true; // Reveal the cell
-                }
-            }
+    /**
+     * Method which plays the player's half of a step: moves the player, reveals the cells around them and checks for a
+     * win or a loss, without letting the cats move. Real-time play applies every queued move this way and moves the cats
+     * on a timer instead.
+     * @param move is the player's move (W,A,S,D)
+     * @return MOVED if the game goes on, otherwise the outcome of the move.
+     */
+    public StepResult applyPlayerMove(char move){
+        if(!isMoveKey(move)){
+            return StepResult.INVALID;
+        }
+        if(!playerMove(move)){
+            return StepResult.BLOCKED;
+        }
+        revealCells(player.getX(), player.getY());
+
+        if(checkWin()){
+            return StepResult.WON;
+        }
+        if(checkLoss()){
+            return StepResult.LOST;
         }
+        return StepResult.MOVED;
     }
 
     /**
-     * Method which outputs maze to screen. Takes into account which cells are revealed to the player and which are not
-     * and does the respective output
+     * Method which plays the cats' half of a step: moves every cat once and checks whether one caught the player.
+     * @return LOST if a cat caught the player, otherwise MOVED.
      */
-    public void printMaze() {
-        System.out.println("Maze:");
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                if(revealedCells[y][x] || maze[y][x] == '@' || maze[y][x] == '$' || maze[y][x] == '!'){
-                    System.out.print(maze[y][x]);
-                }else{
-                    System.out.print('.');
-                }
-            }
-            System.out.println();
+    public StepResult advanceCats(){
+        moveCats();
+        if(checkLoss()){
+            return StepResult.LOST;
         }
+        return StepResult.MOVED;
+    }
+
+    private static boolean isMoveKey(char move){
+        return move == 'W' || move == 'A' || move == 'S' || move == 'D';
     }
 
     /**
      * Method resposbile for moving the player. Depending on their input, will depend on the players new location
      * @param move is the player's move (W,A,S,D)
-     * @return true if
+     * @return true if the player moved, false if the input was not a move or the move was blocked by a wall.
      */
     public boolean playerMove(char move){
-        int[] playerPosition = player.getPlayerPosition();
-        int x = playerPosition[0];
-        int y = playerPosition[1];
+        long start = GameMetrics.start();
+        GameEvents.PlayerMove event = null;
+        if (GameEvents.PLAYER_MOVE.isEnabled()) {
+            event = new GameEvents.PlayerMove();
+            event.begin();
+        }
+        boolean moved = movePlayer(move);
+        if (event != null) {
+            event.moved = moved;
+            event.commit();
+        }
+        GameMetrics.record(GameMetrics.Phase.PLAYER_MOVE, start);
+        return moved;
+    }
+
+    /**
+     * Does the work of playerMove, which times it.
+     */
+    private boolean movePlayer(char move){
+        int x = player.getX();
+        int y = player.getY();
         int newX = x;
         int newY = y;
 
@@ -153,40 +495,189 @@ public class GameState {
                 newX = x + 1;
                 break;
             default:
-                System.out.println("Invalid move. Please enter just A (left), S (down), D (right), or W (up).");
                 return false;
         }
         if(isValidMove(newX,newY)){
             updatePlayerPosition(newX,newY);
             return true;
-        }else{
-            System.out.println("Invalid move: you cannot move through walls!");
-            return false;
         }
+        return false;
     }
 
     /**
-     * Method responsible for moving the cats. Takes a position generated from the RandomMovementGenerator class and
-     * then uses that postion and updates the cats position. Uses streams to go iterate through cat list.
+     * Method responsible for moving the cats. In random mode each cat takes a position generated from the
+     * RandomMovementGenerator class. In pursuit mode the cats share one flow field towards the player and fall back to a
+     * random move when they cannot reach the player.
      */
     public void moveCats(){
-        AtomicInteger index = new AtomicInteger(0);
-        Arrays.stream(cats).forEach(cat -> {
-            int catX = cat.getX();
-            int catY = cat.getY();
+        long start = GameMetrics.start();
+        GameEvents.MoveCats event = null;
+        if (GameEvents.MOVE_CATS.isEnabled()) {
+            event = new GameEvents.MoveCats();
+            event.begin();
+        }
+        moveEveryCat();
+        if (event != null) {
+            event.catCount = catXs.length;
+            event.commit();
+        }
+        GameMetrics.record(GameMetrics.Phase.MOVE_CATS, start);
+    }
+
+    /**
+     * Does the work of moveCats, which times it.
+     */
+    private void moveEveryCat(){
+        if (catBehaviour == CatBehaviour.PURSUIT) {
+            if (flowField == null) {
+                flowField = new FlowField(maze);
+            }
+            flowField.update(player.getX(), player.getY());
+        }
+        if (parallelCats != null) {
+            parallelCats.moveCats(catBehaviour == CatBehaviour.PURSUIT ? flowField : null);
+            return;
+        }
+        for (int i = 0; i < catXs.length; i++) {
+            int catX = catXs[i];
+            int catY = catYs[i];
+
+            int[] move = null;
+            if (catBehaviour == CatBehaviour.PURSUIT) {
+                move = flowField.nextMove(catX, catY, catRandom);
+            }
+            if (move == null) {
+                move = randomMovementGenerator.generateRandomMove(
+                catX, catY,lastCatXs[i],lastCatYs[i]
+                );
+            }
+
+            lastCatXs[i] = catX;
+            lastCatYs[i] = catY;
+
+            updateCatPosition(i, catX + move[0], catY + move[1]);
+        }
+    }
+
+    /**
+     * Method which switches the cats to moving in parallel: each turn their moves are proposed over chunks of cats on
+     * the given pool and then applied in order. The cats then draw their randomness from a seed taken from the cat
+     * stream instead of from the stream itself, so for a given session seed they move the same way whatever the size
+     * of the pool, but not the same way as when moving one after another.
+     * @param pool the pool to propose moves on, or null to go back to moving the cats one after another.
+     */
+    public void setCatPool(ForkJoinPool pool){
+        parallelCats = pool == null ? null : new ParallelCatMover(this, randomMovementGenerator, catXs, catYs,
+                lastCatXs, lastCatYs, catRandom.nextLong(), pool);
+    }
+
+    /**
+     * Method which moves the player like playerMove, but so that it can be undone, for searches that explore moves.
+     * Collecting the cheese parks it off the board instead of respawning it. Undo with unmakePlayerMove. The free cell
+     * index is left as it is while searching: nothing spawns during a search, and taking and releasing cells would
+     * reorder the slots later spawns are drawn from, so asking for a hint would change the rest of the game.
+     * @param dx the step in x.
+     * @param dy the step in y.
+     * @return true if the player moved, false if the move was blocked, in which case there is nothing to undo.
+     */
+    boolean makePlayerMove(int dx, int dy){
+        int x = player.getX();
+        int y = player.getY();
+        if (!isValidMove(x + dx, y + dy)) {
+            return false;
+        }
+        boolean collected = x + dx == cheese.getX() && y + dy == cheese.getY();
+        push(x, y, collected ? 1 : 0);
+        player.setPosition(x + dx, y + dy);
+        if (collected) {
+            cheeseCollected++;
+            cheese.setPosition(-1, -1);
+        }
+        return true;
+    }
+
+    /**
+     * Method which undoes the most recent makePlayerMove.
+     */
+    void unmakePlayerMove(){
+        undoSize -= 3;
+        int x = player.getX();
+        int y = player.getY();
+        if (undo[undoSize + 2] != 0) {
+            cheese.setPosition(x, y);
+            cheeseCollected--;
+        }
+        player.setPosition(undo[undoSize], undo[undoSize + 1]);
+    }
+
+    /**
+     * Method which lists the moves a cat picks between in random mode, each equally likely.
+     * @param index which cat.
+     * @param out receives indexes into RandomMovementGenerator.moves, needs room for four.
+     * @return how many moves were written, 0 if the cat stays where it is.
+     */
+    int catMoveOptions(int index, int[] out){
+        return randomMovementGenerator.possibleMoves(catXs[index], catYs[index],
+                lastCatXs[index], lastCatYs[index], out);
+    }
+
+    /**
+     * Method which moves a cat so that it can be undone with unmakeCatMove. Like makePlayerMove it leaves the free cell
+     * index alone.
+     * @param index which cat.
+     * @param move an index into RandomMovementGenerator.moves, or -1 to stay put.
+     */
+    void makeCatMove(int index, int move){
+        push(lastCatXs[index], lastCatYs[index], 0);
+        lastCatXs[index] = catXs[index];
+        lastCatYs[index] = catYs[index];
+        if (move >= 0) {
+            int[] step = randomMovementGenerator.moves[move];
+            placeCat(index, catXs[index] + step[0], catYs[index] + step[1]);
+        }
+    }
 
-            int currentIndex = index.getAndIncrement();
+    /**
+     * Method which undoes the most recent makeCatMove, which must have been for the same cat.
+     * @param index which cat.
+     */
+    void unmakeCatMove(int index){
+        undoSize -= 3;
+        placeCat(index, lastCatXs[index], lastCatYs[index]);
+        lastCatXs[index] = undo[undoSize];
+        lastCatYs[index] = undo[undoSize + 1];
+    }
 
-            int[] move = randomMovementGenerator.generateRandomMove(
-            catX, catY,lastCatPositions[currentIndex][0],lastCatPositions[currentIndex][1]
-            );
+    /**
+     * Method which moves a cat on the occupancy grid only, for the reversible moves of a search.
+     * @param index which cat.
+     * @param x is the new x value of the cat's position.
+     * @param y is the new y value of the cat's position.
+     */
+    private void placeCat(int index, int x, int y){
+        catsAt[catYs[index] * WIDTH + catXs[index]]--;
+        catXs[index] = x;
+        catYs[index] = y;
+        catsAt[y * WIDTH + x]++;
+    }
 
-            lastCatPositions[currentIndex][0] = catX;
-            lastCatPositions[currentIndex][1] = catY;
+    int getLastCatX(int index){
+        return lastCatXs[index];
+    }
 
-            updateCatPosition(cat, catX + move[0], catY + move[1]);
+    int getLastCatY(int index){
+        return lastCatYs[index];
+    }
 
-        });
+    private void push(int a, int b, int c){
+        if (undoSize + 3 > undo.length) {
+            int[] grown = new int[undo.length * 2];
+            System.arraycopy(undo, 0, grown, 0, undoSize);
+            undo = grown;
+        }
+        undo[undoSize++] = a;
+        undo[undoSize++] = b;
+        undo[undoSize++] = c;
     }
 
     /**
@@ -196,9 +687,9 @@ public class GameState {
      * @return returns true if x and y coordinates of the intended move don't collide with a wall, false if they do.
      */
     public boolean isValidMove(int x, int y){
-        return x >= 1 && x < maze[0].length - 1 &&
-               y >= 1 && y < maze.length - 1 &&
-               maze[y][x] != '#';
+        return x >= 1 && x < maze.getWidth() - 1 &&
+               y >= 1 && y < maze.getHeight() - 1 &&
+               !maze.isWall(x, y);
     }
 
     /**
@@ -207,25 +698,68 @@ public class GameState {
      * @param y is the new y position of the player.
      */
     public void updatePlayerPosition(int x, int y){
-        maze[player.getY()][player.getX()] = ' ';
-
+        int oldX = player.getX();
+        int oldY = player.getY();
         player.setPosition(x,y);
+        updateFreeCell(oldX, oldY);
+        updateFreeCell(x, y);
 
-        if(Arrays.equals(player.getPlayerPosition(),cheese.getCheesePosition())){
+        if(player.getX() == cheese.getX() && player.getY() == cheese.getY()){
             cheeseCollected++;
             respawnCheese();
         }
-
-        maze[player.getY()][player.getX()] = '@';
     }
 
     /**
      * Method responsible for regenerating a new cheese on the board after the player collects it.
      */
     private void respawnCheese() {
-        int [] newPosition = getRandomPosition();
-        cheese.setPosition(newPosition[0],newPosition[1]);
-        maze[cheese.getY()][cheese.getX()] = '$';
+        int oldX = cheese.getX();
+        int oldY = cheese.getY();
+        int newCell = getFairCheeseCell();
+        cheese.setPosition(newCell % WIDTH, newCell / WIDTH);
+        updateFreeCell(oldX, oldY);
+        updateFreeCell(cheese.getX(), cheese.getY());
+    }
+
+    /**
+     * Method which picks a cheese position at least minCheeseDistance steps from the player and closer to the player
+     * than to any cat. Distances come from the maze's junction graph, so no search over the whole grid is needed.
+     * Random positions are tried a fixed number of times, after which the one that came closest to the rules is used.
+     * @return the new cheese cell, as y * WIDTH + x.
+     */
+    private int getFairCheeseCell(){
+        JunctionGraph graph = maze.getJunctionGraph();
+        if (playerDistances == null || !playerDistances.belongsTo(graph)) {
+            playerDistances = graph.newDistances();
+            catDistances = graph.newDistances();
+        }
+        playerDistances.compute(player.getX(), player.getY());
+        catDistances.compute(catXs, catYs, catXs.length);
+
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int attempt = 0; attempt < CHEESE_SPAWN_ATTEMPTS; attempt++) {
+            GameMetrics.count(GameMetrics.Counter.CHEESE_SPAWN_ATTEMPTS, 1);
+            int candidate = getRandomCell();
+            int x = candidate % WIDTH;
+            int y = candidate / WIDTH;
+            int toPlayer = playerDistances.distance(x, y);
+            if (toPlayer < 0) {
+                continue; // The player could never reach it
+            }
+            int toCat = catDistances.distance(x, y);
+            // Negative when a rule is broken, by how many steps
+            int score = Math.min(toPlayer - minCheeseDistance, toCat < 0 ? 0 : toCat - toPlayer - 1);
+            if (score >= 0) {
+                return candidate;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        return best >= 0 ? best : getRandomCell();
     }
 
     /**
@@ -237,49 +771,56 @@ public class GameState {
     }
 
     /**
-     * Method which is responsible for updating the cats position on the board.
-     * @param cat is the list of cats in the maze and their positions.
+     * Method which is responsible for updating the cats position on the board, keeping the occupancy grid in step.
+     * @param index which cat.
      * @param x is the new x value of the cat's position.
      * @param y is the new y value of the cats position.
      */
-    public void updateCatPosition(Cat cat, int x, int y){
-
-        if(cat.getX() == cheese.getX() && cat.getY() == cheese.getY()){
-            maze[cat.getY()][cat.getX()] = '$';
-        }else{
-            maze[cat.getY()][cat.getX()] = ' ';
+    public void updateCatPosition(int index, int x, int y){
+        int oldX = catXs[index];
+        int oldY = catYs[index];
+        catXs[index] = x;
+        catYs[index] = y;
+        if (--catsAt[oldY * WIDTH + oldX] == 0) {
+            updateFreeCell(oldX, oldY);
+        }
+        if (++catsAt[y * WIDTH + x] == 1) {
+            freeCells.take(x, y);
         }
-        cat.setPosition(x,y);
-
-        maze[cat.getY()][cat.getX()] = '!';
     }
 
     /**
-     * Method which checks if any of the cats positions are the same as the players position, indicating a collision has occurred.
+     * Method which checks if a cat is on the player's cell, indicating a collision has occurred. Looks at the occupancy
+     * grid, so it costs the same however many cats there are.
      * @return returns true if collision has occurred, false otherwise.
      */
     public boolean checkLoss(){
-        return Arrays.stream(cats)
-                .anyMatch(cat -> player.getX() == cat.getX() && player.getY() == cat.getY());
+        return isCatAt(player.getX(), player.getY());
     }
 
     /**
      * Cheat code used to change the required amount of cheese to win
      */
     public void changeCheeseToWin(){
-        System.out.println("Changing cheese to win from " + cheeseToWin + " to 1.");
         cheeseToWin = 1;
     }
 
+    /**
+     * Method which sets how much cheese has to be collected to win.
+     * @param cheeseToWin at least 1.
+     */
+    public void setCheeseToWin(int cheeseToWin){
+        if (cheeseToWin < 1) {
+            throw new IllegalArgumentException("Cheese to win must be at least 1: " + cheeseToWin);
+        }
+        this.cheeseToWin = cheeseToWin;
+    }
+
     /**
      * Cheat code to reveal the entire maze.
      */
     public void revealEntireMaze() {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                revealedCells[y][x] = true; // Mark all cells as revealed
-            }
-        }
+        fog.revealAll();
     }
     public int getCheeseToWin(){
         return cheeseToWin;
@@ -290,6 +831,45 @@ public class GameState {
     public Player getPlayer() {
         return player;
     }
+    public Cheese getCheese(){
+        return cheese;
+    }
+    public MazeGrid getMaze(){
+        return maze;
+    }
+    public int getCatCount(){
+        return catXs.length;
+    }
+    public int getCatX(int index){
+        return catXs[index];
+    }
+    public int getCatY(int index){
+        return catYs[index];
+    }
+    public FogOfWar getFog(){
+        return fog;
+    }
+    public FreeCellIndex getFreeCells(){
+        return freeCells;
+    }
+    public CatBehaviour getCatBehaviour(){
+        return catBehaviour;
+    }
+    public void setCatBehaviour(CatBehaviour catBehaviour){
+        this.catBehaviour = catBehaviour;
+    }
+    public int getMinCheeseDistance(){
+        return minCheeseDistance;
+    }
+    public void setMinCheeseDistance(int minCheeseDistance){
+        this.minCheeseDistance = minCheeseDistance;
+    }
+    public int getWidth(){
+        return WIDTH;
+    }
+    public int getHeight(){
+        return HEIGHT;
+    }
 
 
 }
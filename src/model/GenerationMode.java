@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * The ways {@link MazeGenerator} can build a maze.
+ */
+public enum GenerationMode {
+    /** Prim's algorithm plus random cycles, retried until the maze passes isMazeValid. */
+    VALIDATED,
+    /** Carved on a cell and post lattice so the 2x2 rules hold by construction and nothing is ever retried. */
+    CONSTRUCTIVE,
+    /** Like CONSTRUCTIVE, but carved in tiles on the common fork-join pool. Meant for very large mazes. */
+    PARALLEL
+}
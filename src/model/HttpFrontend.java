@@ -0,0 +1,373 @@
+package model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import view.DeltaEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for serving the game to web browsers on a local port, with the JDK's built-in HTTP server.
+ * <p>
+ * {@code GET /} serves a small page that draws the maze. The page opens {@code GET /events}, a stream of server-sent
+ * events that starts a new game. The stream's first event names the session, the second is a keyframe of the whole
+ * board, and after that every move sends only the cells that changed, encoded by {@link DeltaEncoder}. Moves arrive as
+ * {@code POST /move?session=ID} with W, A, S, D, C or M as the body, and the answer is the outcome of the move. The
+ * event is written to the stream by the request that made the move, so a session only holds a parked virtual thread,
+ * its game and a small encode buffer between moves. Sessions end when the game does, when the browser goes away or
+ * when no move comes for the idle timeout.
+ */
+public class HttpFrontend implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;
+    private static final int MAX_MOVE_BODY = 16;
+    static final byte[] PAGE = ("""
+            <!DOCTYPE html>
+            <html><head><meta charset="utf-8"><title>Cat and Mouse Maze Adventure</title>
+            <style>body{background:#111;color:#ddd;font-family:monospace}pre{font-size:20px;line-height:20px}</style>
+            </head><body>
+            <pre id="maze"></pre><p id="status"></p>
+            <p>Use W, A, S and D or the arrow keys to move. Find the cheese ($) before a cat (!) eats you (@)!</p>
+            <script>
+            const maze = document.getElementById('maze'), status = document.getElementById('status');
+            const keys = {w: 'W', a: 'A', s: 'S', d: 'D', ArrowUp: 'W', ArrowLeft: 'A', ArrowDown: 'S', ArrowRight: 'D'};
+            const events = new EventSource('/events');
+            let session, width = 1, cells = [];
+            function show(fields) {
+              status.textContent = 'Cheese collected: ' + fields[0] + ' of ' + fields[1]
+                  + (fields[2] === 'W' ? '. You win!' : fields[2] === 'L' ? '. Game over!' : '');
+              if (fields[2] !== 'P') events.close();
+              let rows = [];
+              for (let i = 0; i < cells.length; i += width) rows.push(cells.slice(i, i + width).join(''));
+              maze.textContent = rows.join('\\n');
+            }
+            events.addEventListener('session', e => session = e.data);
+            events.addEventListener('key', e => {
+              const fields = e.data.split(',');
+              width = +fields[3];
+              cells = Array.from(fields[5]);
+              show(fields);
+            });
+            events.onmessage = e => {
+              const fields = e.data.split(',');
+              let index = '';
+              for (const c of fields[3]) {
+                if (/[0-9a-z]/.test(c)) { index += c; } else { cells[parseInt(index, 36)] = c; index = ''; }
+              }
+              show(fields);
+            };
+            events.onerror = () => events.close();
+            document.onkeydown = e => {
+              const move = keys[e.key];
+              if (move && session) fetch('/move?session=' + session, {method: 'POST', body: move});
+            };
+            </script></body></html>
+            """).getBytes(StandardCharsets.UTF_8);
+
+    private final GameOptions options;
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final Semaphore permits;
+    private final Map<String, WebSession> sessions = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MazeSource mazes;
+    private final AtomicLong connections = new AtomicLong();
+
+    /**
+     * Opens the port on the loopback address and starts serving.
+     * @param port the port to listen on, 0 for any free port.
+     * @param maxSessions how many games may run at once; further browsers are turned away.
+     * @param idleTimeoutSeconds how long a session may wait for a move before it is closed.
+     * @param options the settings every game is started with.
+     * @throws IOException if the port cannot be opened or the corpus cannot be read.
+     */
+    public HttpFrontend(int port, int maxSessions, int idleTimeoutSeconds, GameOptions options) throws IOException {
+        if (maxSessions < 1 || idleTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("Max sessions and idle timeout must be at least 1, got "
+                    + maxSessions + " and " + idleTimeoutSeconds);
+        }
+        if (options.getRecordPath() != null || options.getReplayPath() != null || options.getRealtimeMillis() > 0
+                || options.isEndless() || options.getJournalPath() != null || options.getSpectatePort() >= 0) {
+            throw new IllegalArgumentException("--record, --replay, --realtime, --endless, --journal and --spectate"
+                    + " cannot be used by the web frontend");
+        }
+        this.options = options;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.permits = new Semaphore(maxSessions);
+        this.mazes = new MazeSource(options);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::page);
+        server.createContext("/events", this::events);
+        server.createContext("/move", this::move);
+        server.start();
+    }
+
+    /**
+     * @return the port the frontend listens on.
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return how many games are being played right now.
+     */
+    public int getActiveSessions(){
+        return maxSessions - permits.availablePermits();
+    }
+
+    /**
+     * @return how many event streams have been opened since the frontend started.
+     */
+    public long getConnections(){
+        return connections.get();
+    }
+
+    /**
+     * @return a one line summary of the frontend's counters, with the maze pool's if it has one.
+     */
+    public String describe(){
+        return "Web frontend: " + getConnections() + " event streams, " + getActiveSessions() + " playing"
+                + (mazes.getPool() != null ? ", maze pool " + mazes.getPool().describe() : "");
+    }
+
+    /**
+     * Stops serving, ends every session and closes the pool and corpus.
+     */
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        for (WebSession session : sessions.values()) {
+            session.end();
+        }
+        executor.shutdown();
+        mazes.close();
+    }
+
+    private void page(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestURI().getPath().equals("/")) {
+                reply(exchange, 404, "Not found");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, PAGE.length);
+            exchange.getResponseBody().write(PAGE);
+        }
+    }
+
+    private void events(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                reply(exchange, 405, "Use GET");
+                return;
+            }
+            if (!permits.tryAcquire()) {
+                reply(exchange, 503, "Server full, please try again later.");
+                return;
+            }
+            try {
+                long connection = connections.incrementAndGet();
+                RandomStreams streams = options.getSeed() != null
+                        ? new RandomStreams(options.getSeed() + connection) : RandomStreams.withRandomSeed();
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, 0);
+                WebSession session = new WebSession(UUID.randomUUID().toString(), mazes.newGame(streams),
+                        exchange.getResponseBody());
+                sessions.put(session.id, session);
+                try {
+                    session.start();
+                    session.awaitEnd(idleTimeoutNanos);
+                } finally {
+                    sessions.remove(session.id);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void move(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                reply(exchange, 405, "Use POST");
+                return;
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            WebSession session = query != null && query.startsWith("session=")
+                    ? sessions.get(query.substring("session=".length())) : null;
+            if (session == null) {
+                reply(exchange, 404, "No such session");
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_MOVE_BODY);
+            }
+            String outcome = body.length == 0 ? null : session.play(Character.toUpperCase((char) body[0]));
+            if (outcome == null) {
+                reply(exchange, 400, "Send W, A, S, D, C or M");
+            } else {
+                reply(exchange, 200, outcome);
+            }
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Class holding one browser's game and its event stream. Moves and writes to the stream are made while holding the
+     * session's lock, so events go out in the order the moves were made.
+     */
+    private static final class WebSession {
+        private final String id;
+        private final GameState gameState;
+        private final OutputStream events;
+        private final DeltaEncoder encoder = new DeltaEncoder();
+        private final CountDownLatch ended = new CountDownLatch(1);
+        private volatile long lastMoveNanos = System.nanoTime();
+        private boolean over;
+
+        WebSession(String id, GameState gameState, OutputStream events){
+            this.id = id;
+            this.gameState = gameState;
+            this.events = events;
+        }
+
+        /**
+         * Sends the session id and the keyframe.
+         */
+        synchronized void start(){
+            byte[] hello = ("event: session\ndata: " + id + "\n\n").getBytes(StandardCharsets.US_ASCII);
+            try {
+                events.write(hello);
+                send('P');
+            } catch (IOException e) {
+                end();
+            }
+        }
+
+        /**
+         * Plays a command and sends what changed.
+         * @param command W, A, S or D to move, C or M for the cheat codes.
+         * @return the outcome to tell the browser, or null if the command is not one of those.
+         */
+        synchronized String play(char command){
+            if (over) {
+                return "OVER";
+            }
+            lastMoveNanos = System.nanoTime();
+            StepResult result;
+            if (command == 'C') {
+                gameState.changeCheeseToWin();
+                result = StepResult.MOVED;
+            } else if (command == 'M') {
+                gameState.revealEntireMaze();
+                result = StepResult.MOVED;
+            } else {
+                result = gameState.step(command);
+                if (result == StepResult.INVALID) {
+                    return null;
+                }
+            }
+            char status = result == StepResult.WON ? 'W' : result == StepResult.LOST ? 'L' : 'P';
+            try {
+                send(status);
+            } catch (IOException e) {
+                end();
+            }
+            if (status != 'P') {
+                end();
+            }
+            return result.name();
+        }
+
+        private void send(char status) throws IOException {
+            int length = encoder.encode(gameState, status);
+            if (length > 0) {
+                events.write(encoder.getBuffer(), 0, length);
+                events.flush();
+            }
+        }
+
+        /**
+         * Waits until the game ends, the stream breaks or no move comes for the idle timeout.
+         */
+        void awaitEnd(long idleTimeoutNanos){
+            try {
+                long wait = idleTimeoutNanos;
+                while (!ended.await(wait, TimeUnit.NANOSECONDS)) {
+                    wait = lastMoveNanos + idleTimeoutNanos - System.nanoTime();
+                    if (wait <= 0) {
+                        end();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void end(){
+            synchronized (this) {
+                over = true;
+            }
+            ended.countDown();
+        }
+    }
+
+    /**
+     * Starts the web frontend. Takes --port N, --max-sessions N and --idle-timeout SECONDS, followed by any of the game
+     * options except --record, --replay, --realtime, --endless, --journal and --spectate.
+     */
+    public static void main(String[] args) {
+        ServerOptions options;
+        HttpFrontend frontend;
+        try {
+            options = ServerOptions.parse(args, DEFAULT_PORT);
+            frontend = new HttpFrontend(options.getPort(), options.getMaxSessions(), options.getIdleTimeoutSeconds(),
+                    options.getGameOptions());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(ServerOptions.usage("HttpFrontend"));
+            System.out.println(GameOptions.usage());
+            return;
+        } catch (IOException e) {
+            System.out.println("Cannot start web frontend: " + e.getMessage());
+            return;
+        }
+        GameMetrics.register();
+        System.out.println("Open http://localhost:" + frontend.getPort() + "/ to play, up to " + options.getMaxSessions()
+                + " games at once.");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                frontend.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+            System.out.println(frontend.describe());
+        }));
+    }
+}
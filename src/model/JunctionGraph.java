@@ -0,0 +1,415 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Class holding a maze contracted to its junctions, used to answer shortest path distances between cells without a
+ * search over the whole grid.
+ * <p>
+ * Every open cell with other than two open neighbours (junctions, dead ends and isolated cells) is a node. The runs of
+ * two-neighbour cells between nodes are corridors, each stored as a single weighted edge, and every corridor cell
+ * records its edge and how far along it lies. A loop made only of corridor cells gets one of its cells promoted to a
+ * node. Node adjacency is kept in compressed arrays (the edges of node n are adjacencyEdge[adjacencyStart[n] ..
+ * adjacencyStart[n + 1] - 1]). Cells follow the same rule as GameState.isValidMove, so the border is never open.
+ * <p>
+ * The only per cell storage is one int: a node id, or for a corridor cell its index in the list of corridor cells.
+ * Corridors are numbered in the order they are walked, so the cells of edge e are the indexes edgeStart[e] ..
+ * edgeStart[e + 1] - 1 and a cell's edge is found by a binary search over edgeStart, its offset by subtraction.
+ */
+public class JunctionGraph {
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int WALL = -1;
+
+    private final int width;
+    private final int height;
+    private final int nodeCount;
+    private final int edgeCount;
+    /** Node id of a node cell, -2 - index of a corridor cell, WALL for walls. */
+    private final int[] cells;
+    /** Index of the first corridor cell of each edge, with one more entry for the end of the last. */
+    private final int[] edgeStart;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final int[] edgeLength;
+    private final int[] adjacencyStart;
+    private final int[] adjacencyEdge;
+    private Distances scratch;
+
+    private JunctionGraph(int width, int height, int nodeCount, int edgeCount, int[] cells, int[] edgeStart,
+                          int[] edgeFrom, int[] edgeTo, int[] edgeLength){
+        this.width = width;
+        this.height = height;
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.cells = cells;
+        this.edgeStart = edgeStart;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeLength = edgeLength;
+
+        // Loops lead back to their own node and never shorten a path, so they are left out of the adjacency
+        this.adjacencyStart = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeFrom[e] != edgeTo[e]) {
+                adjacencyStart[edgeFrom[e] + 1]++;
+                adjacencyStart[edgeTo[e] + 1]++;
+            }
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            adjacencyStart[n + 1] += adjacencyStart[n];
+        }
+        this.adjacencyEdge = new int[adjacencyStart[nodeCount]];
+        int[] fill = new int[nodeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeFrom[e] != edgeTo[e]) {
+                adjacencyEdge[adjacencyStart[edgeFrom[e]] + fill[edgeFrom[e]]++] = e;
+                adjacencyEdge[adjacencyStart[edgeTo[e]] + fill[edgeTo[e]]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Builds the junction graph of a maze.
+     * @param maze the walls of the maze.
+     * @return the contracted graph.
+     */
+    public static JunctionGraph build(MazeGrid maze){
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        int[] cells = new int[width * height];
+        Arrays.fill(cells, WALL);
+
+        int nodeCount = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (isOpen(maze, x, y) && degree(maze, x, y) != 2) {
+                    cells[y * width + x] = nodeCount++;
+                }
+            }
+        }
+
+        // Every node has at most four edges, each counted from both ends; loops grow the arrays as needed
+        int capacity = 2 * nodeCount + 1;
+        int[] edgeStart = new int[capacity + 1];
+        int[] edgeFrom = new int[capacity];
+        int[] edgeTo = new int[capacity];
+        int[] edgeLength = new int[capacity];
+        int edgeCount = 0;
+        int corridorCells = 0;
+        int[] step = {-width, width, -1, 1};
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int y = 1; y < height - 1; y++) {
+                for (int x = 1; x < width - 1; x++) {
+                    int cell = y * width + x;
+                    if (pass == 0 ? cells[cell] < 0 : !isOpen(maze, x, y) || cells[cell] != WALL) {
+                        continue;
+                    }
+                    if (pass == 1) {
+                        // Untouched by the first pass, so this cell lies on a loop with no junction
+                        cells[cell] = nodeCount++;
+                    }
+                    for (int d = 0; d < step.length; d++) {
+                        int next = cell + step[d];
+                        if (!isOpen(maze, next % width, next / width)) {
+                            continue;
+                        }
+                        if (edgeCount == edgeFrom.length) {
+                            edgeStart = Arrays.copyOf(edgeStart, edgeStart.length * 2);
+                            edgeFrom = grow(edgeFrom);
+                            edgeTo = grow(edgeTo);
+                            edgeLength = grow(edgeLength);
+                        }
+                        if (cells[next] >= 0) {
+                            // Two neighbouring nodes share a length one edge, created once from the lower id
+                            if (cells[cell] < cells[next]) {
+                                edgeStart[edgeCount] = corridorCells;
+                                edgeFrom[edgeCount] = cells[cell];
+                                edgeTo[edgeCount] = cells[next];
+                                edgeLength[edgeCount++] = 1;
+                            }
+                            continue;
+                        }
+                        if (cells[next] != WALL) {
+                            continue;
+                        }
+                        edgeStart[edgeCount] = corridorCells;
+                        int previous = cell;
+                        int current = next;
+                        int offset = 1;
+                        while (cells[current] < 0) {
+                            cells[current] = -2 - corridorCells++;
+                            offset++;
+                            int following = -1;
+                            for (int s : step) {
+                                int candidate = current + s;
+                                if (candidate != previous && isOpen(maze, candidate % width, candidate / width)) {
+                                    following = candidate;
+                                    break;
+                                }
+                            }
+                            previous = current;
+                            current = following;
+                        }
+                        edgeFrom[edgeCount] = cells[cell];
+                        edgeTo[edgeCount] = cells[current];
+                        edgeLength[edgeCount++] = offset;
+                    }
+                }
+            }
+        }
+        edgeStart[edgeCount] = corridorCells;
+        return new JunctionGraph(width, height, nodeCount, edgeCount, cells, Arrays.copyOf(edgeStart, edgeCount + 1),
+                Arrays.copyOf(edgeFrom, edgeCount), Arrays.copyOf(edgeTo, edgeCount),
+                Arrays.copyOf(edgeLength, edgeCount));
+    }
+
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    public int getEdgeCount(){
+        return edgeCount;
+    }
+
+    /**
+     * Finds the length of the shortest path between two cells. Not safe to call from several threads at once, use
+     * {@link #newDistances()} for that.
+     * @return the number of steps, or -1 if either cell is not open or there is no path.
+     */
+    public int distance(int fromX, int fromY, int toX, int toY){
+        if (scratch == null) {
+            scratch = newDistances();
+        }
+        scratch.compute(fromX, fromY);
+        return scratch.distance(toX, toY);
+    }
+
+    /**
+     * @return a reusable table for distances from a set of cells.
+     */
+    public Distances newDistances(){
+        return new Distances();
+    }
+
+    /**
+     * Finds the edge a corridor cell lies on: the last edge starting at or before its index, since edges between two
+     * neighbouring nodes have no cells and share their start with the next edge.
+     * @param index the corridor cell's index.
+     * @return the edge id.
+     */
+    private int edgeOf(int index){
+        int low = 0;
+        int high = edgeCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (edgeStart[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isOpen(MazeGrid maze, int x, int y){
+        return x >= 1 && x < maze.getWidth() - 1 && y >= 1 && y < maze.getHeight() - 1 && !maze.isWall(x, y);
+    }
+
+    private static int degree(MazeGrid maze, int x, int y){
+        int degree = 0;
+        if (isOpen(maze, x, y - 1)) {
+            degree++;
+        }
+        if (isOpen(maze, x, y + 1)) {
+            degree++;
+        }
+        if (isOpen(maze, x - 1, y)) {
+            degree++;
+        }
+        if (isOpen(maze, x + 1, y)) {
+            degree++;
+        }
+        return degree;
+    }
+
+    private static int[] grow(int[] array){
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    /**
+     * Class holding the distance from the nearest of a set of source cells to every node, computed with Dijkstra's
+     * algorithm over the junction graph. The distance to any cell then takes O(1): the better of its corridor's two
+     * nodes, or a straight walk along the corridor from a source on the same one. Reusable, all storage is allocated
+     * once.
+     */
+    public final class Distances {
+        private final int[] nodeDistance = new int[nodeCount];
+        private final int[] heap = new int[nodeCount];
+        private final int[] heapIndex = new int[nodeCount];
+        private final int[] sourceHead = new int[edgeCount];
+        private int[] sourceNext = new int[4];
+        private int[] sourceOffset = new int[4];
+        private final int[] singleX = new int[1];
+        private final int[] singleY = new int[1];
+        private int heapSize;
+
+        private Distances(){
+        }
+
+        /**
+         * @param graph a junction graph.
+         * @return true if this table holds distances over that graph.
+         */
+        public boolean belongsTo(JunctionGraph graph){
+            return graph == JunctionGraph.this;
+        }
+
+        /**
+         * Computes the distances from a single cell, without allocating.
+         * @param x the x coordinate of the source.
+         * @param y the y coordinate of the source.
+         */
+        public void compute(int x, int y){
+            singleX[0] = x;
+            singleY[0] = y;
+            compute(singleX, singleY, 1);
+        }
+
+        /**
+         * Computes the distances from the nearest of the given cells. Cells that are not open are ignored.
+         * @param xs x coordinates of the sources.
+         * @param ys y coordinates of the sources.
+         * @param count how many sources to read from the arrays.
+         */
+        public void compute(int[] xs, int[] ys, int count){
+            Arrays.fill(nodeDistance, UNREACHED);
+            Arrays.fill(heapIndex, -1);
+            Arrays.fill(sourceHead, -1);
+            heapSize = 0;
+            if (sourceNext.length < count) {
+                sourceNext = new int[count];
+                sourceOffset = new int[count];
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (xs[i] < 0 || xs[i] >= width || ys[i] < 0 || ys[i] >= height) {
+                    continue;
+                }
+                int value = cells[ys[i] * width + xs[i]];
+                if (value >= 0) {
+                    lower(value, 0);
+                } else if (value != WALL) {
+                    int index = -2 - value;
+                    int e = edgeOf(index);
+                    int offset = index - edgeStart[e] + 1;
+                    sourceOffset[i] = offset;
+                    sourceNext[i] = sourceHead[e];
+                    sourceHead[e] = i;
+                    lower(edgeFrom[e], offset);
+                    lower(edgeTo[e], edgeLength[e] - offset);
+                }
+            }
+
+            while (heapSize > 0) {
+                int node = poll();
+                int base = nodeDistance[node];
+                for (int i = adjacencyStart[node]; i < adjacencyStart[node + 1]; i++) {
+                    int e = adjacencyEdge[i];
+                    int other = edgeFrom[e] == node ? edgeTo[e] : edgeFrom[e];
+                    lower(other, base + edgeLength[e]);
+                }
+            }
+        }
+
+        /**
+         * @param x the x coordinate of the cell.
+         * @param y the y coordinate of the cell.
+         * @return the number of steps from the nearest source to the cell, or -1 if it is not open or unreachable.
+         */
+        public int distance(int x, int y){
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return -1;
+            }
+            int value = cells[y * width + x];
+            int best = UNREACHED;
+            if (value >= 0) {
+                best = nodeDistance[value];
+            } else if (value != WALL) {
+                int index = -2 - value;
+                int e = edgeOf(index);
+                int offset = index - edgeStart[e] + 1;
+                best = Math.min(add(nodeDistance[edgeFrom[e]], offset),
+                        add(nodeDistance[edgeTo[e]], edgeLength[e] - offset));
+                for (int s = sourceHead[e]; s >= 0; s = sourceNext[s]) {
+                    int along = Math.abs(offset - sourceOffset[s]);
+                    if (edgeFrom[e] == edgeTo[e]) {
+                        // Round the loop the other way
+                        along = Math.min(along, edgeLength[e] - along);
+                    }
+                    best = Math.min(best, along);
+                }
+            }
+            return best == UNREACHED ? -1 : best;
+        }
+
+        private int add(int distance, int steps){
+            return distance == UNREACHED ? UNREACHED : distance + steps;
+        }
+
+        /**
+         * Lowers the distance of a node, adding it to the heap or moving it up as needed.
+         */
+        private void lower(int node, int distance){
+            if (distance >= nodeDistance[node]) {
+                return;
+            }
+            nodeDistance[node] = distance;
+            int i = heapIndex[node];
+            if (i < 0) {
+                i = heapSize++;
+            }
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (nodeDistance[heap[parent]] <= distance) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                heapIndex[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = node;
+            heapIndex[node] = i;
+        }
+
+        private int poll(){
+            int top = heap[0];
+            heapIndex[top] = -2;
+            int last = heap[--heapSize];
+            if (heapSize > 0) {
+                int distance = nodeDistance[last];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= heapSize) {
+                        break;
+                    }
+                    if (child + 1 < heapSize && nodeDistance[heap[child + 1]] < nodeDistance[heap[child]]) {
+                        child++;
+                    }
+                    if (nodeDistance[heap[child]] >= distance) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    heapIndex[heap[i]] = i;
+                    i = child;
+                }
+                heap[i] = last;
+                heapIndex[last] = i;
+            }
+            return top;
+        }
+    }
+}
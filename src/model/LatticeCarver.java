@@ -0,0 +1,209 @@
+package model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Class responsible for carving mazes that satisfy the 2x2 rules of {@link MazeGenerator} by construction.
+ * <p>
+ * Cells sit on odd coordinates and every (even, even) position is a post. Any 2x2 window covers exactly one cell and
+ * one post, so while every cell is open and every post is a wall no window can be all open or all walls, whatever the
+ * passages between cells look like. A spanning tree over the cells keeps the maze connected. The only windows this
+ * does not cover are the ones that isMazeValid checks against the right and bottom border, and the forced open
+ * corners, which {@link #finish()} patches with a few fixed cells. Passages that those patches depend on being walls
+ * are never carved.
+ */
+final class LatticeCarver {
+    private static final int[] DX = {0, 0, -1, 1};
+    private static final int[] DY = {-1, 1, 0, 0};
+
+    private final MazeGrid maze;
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+    private final boolean evenWidth;
+    private final boolean evenHeight;
+
+    /**
+     * @param maze the maze to carve, which must be all walls.
+     */
+    LatticeCarver(MazeGrid maze){
+        this.maze = maze;
+        this.width = maze.getWidth();
+        this.height = maze.getHeight();
+        this.columns = (width - 1) / 2;
+        this.rows = (height - 1) / 2;
+        this.evenWidth = width % 2 == 0;
+        this.evenHeight = height % 2 == 0;
+    }
+
+    int getColumns(){
+        return columns;
+    }
+
+    int getRows(){
+        return rows;
+    }
+
+    /**
+     * Carves a random spanning tree over a block of lattice cells using Prim's algorithm and then opens extra passages
+     * inside the block to create cycles. Only passages between two cells of the block are opened, and only grid columns
+     * 2*fromColumn+1 .. 2*toColumn-1 are written, so blocks whose column ranges fall in different words of the bitboard
+     * can be carved from different threads at the same time.
+     * @param fromColumn first lattice column of the block.
+     * @param fromRow first lattice row of the block.
+     * @param toColumn lattice column after the last one in the block.
+     * @param toRow lattice row after the last one in the block.
+     * @param cycleProbability the probability of opening each passage that is not part of the tree.
+     * @param random source of randomness for this block.
+     */
+    void carve(int fromColumn, int fromRow, int toColumn, int toRow, double cycleProbability, RandomGenerator random){
+        int blockColumns = toColumn - fromColumn;
+        int cellCount = blockColumns * (toRow - fromRow);
+        int[] options = new int[DX.length];
+        CellFrontier frontier = new CellFrontier(cellCount);
+        long[] queued = new long[(cellCount + 63) >>> 6];
+
+        int start;
+        do {
+            start = random.nextInt(cellCount);
+        } while (!isCell(fromColumn + start % blockColumns, fromRow + start / blockColumns));
+        frontier.add(start);
+        queued[start >>> 6] |= 1L << start;
+
+        while (!frontier.isEmpty()) {
+            int local = frontier.removeRandom(random);
+
+            int column = fromColumn + local % blockColumns;
+            int row = fromRow + local / blockColumns;
+            int x = 2 * column + 1;
+            int y = 2 * row + 1;
+
+            int optionCount = 0;
+            for (int d = 0; d < DX.length; d++) {
+                int nextColumn = column + DX[d];
+                int nextRow = row + DY[d];
+                if (nextColumn >= fromColumn && nextColumn < toColumn && nextRow >= fromRow && nextRow < toRow
+                        && canConnect(column, row, d) && !maze.isWall(2 * nextColumn + 1, 2 * nextRow + 1)) {
+                    options[optionCount++] = d;
+                }
+            }
+            maze.setOpen(x, y);
+            if (optionCount > 0) {
+                int d = options[random.nextInt(optionCount)];
+                maze.setOpen(x + DX[d], y + DY[d]);
+            }
+
+            for (int d = 0; d < DX.length; d++) {
+                int nextColumn = column + DX[d];
+                int nextRow = row + DY[d];
+                if (nextColumn < fromColumn || nextColumn >= toColumn || nextRow < fromRow || nextRow >= toRow
+                        || !canConnect(column, row, d)) {
+                    continue;
+                }
+                int next = (nextRow - fromRow) * blockColumns + (nextColumn - fromColumn);
+                if ((queued[next >>> 6] & (1L << next)) == 0) {
+                    queued[next >>> 6] |= 1L << next;
+                    frontier.add(next);
+                }
+            }
+        }
+
+        for (int row = fromRow; row < toRow; row++) {
+            for (int column = fromColumn; column < toColumn; column++) {
+                if (column + 1 < toColumn) {
+                    openCycle(column, row, 3, cycleProbability, random);
+                }
+                if (row + 1 < toRow) {
+                    openCycle(column, row, 1, cycleProbability, random);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the fixed cells the right and bottom borders need, depending on whether each dimension is odd or even.
+     * The corners themselves are left to MazeGenerator.ensureCornerOpenness.
+     */
+    void finish(){
+        if (evenWidth) {
+            // The last interior column holds no cells, so every passage stub in it is opened
+            for (int y = 1; y < height - 1; y += 2) {
+                maze.setOpen(width - 2, y);
+            }
+            maze.setOpen(width - 2, 2);
+            if (!evenHeight) {
+                maze.setOpen(width - 2, height - 3);
+            }
+        }
+        if (evenHeight) {
+            for (int x = 1; x < width - 1; x += 2) {
+                maze.setOpen(x, height - 2);
+            }
+            maze.setOpen(2, height - 2);
+            if (!evenWidth) {
+                maze.setOpen(width - 3, height - 2);
+            }
+        }
+        if (evenWidth && evenHeight) {
+            // The bottom right cell is left out, so the corner is joined to the maze through the column above it
+            maze.setOpen(width - 2, height - 2);
+            maze.setOpen(width - 2, height - 4);
+            maze.setOpen(width - 4, height - 3);
+        }
+    }
+
+    /**
+     * Opens the passage from a cell in a direction, if that passage may be carved at all.
+     * @param column lattice column of the cell.
+     * @param row lattice row of the cell.
+     * @param direction 0 up, 1 down, 2 left, 3 right.
+     * @return true if the passage was opened.
+     */
+    boolean connect(int column, int row, int direction){
+        if (!canConnect(column, row, direction)) {
+            return false;
+        }
+        maze.setOpen(2 * column + 1 + DX[direction], 2 * row + 1 + DY[direction]);
+        return true;
+    }
+
+    /**
+     * Opens the passage from a cell in a direction with the given probability, if it may be carved and is still a wall.
+     * @param column lattice column of the cell.
+     * @param row lattice row of the cell.
+     * @param direction 0 up, 1 down, 2 left, 3 right.
+     * @param cycleProbability the probability of opening the passage.
+     * @param random source of randomness.
+     */
+    void openCycle(int column, int row, int direction, double cycleProbability, RandomGenerator random){
+        int x = 2 * column + 1 + DX[direction];
+        int y = 2 * row + 1 + DY[direction];
+        if (canConnect(column, row, direction) && maze.isWall(x, y) && random.nextDouble() < cycleProbability) {
+            maze.setOpen(x, y);
+        }
+    }
+
+    private boolean isCell(int column, int row){
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return false;
+        }
+        return !(evenWidth && evenHeight && column == columns - 1 && row == rows - 1);
+    }
+
+    private boolean canConnect(int column, int row, int direction){
+        if (!isCell(column, row) || !isCell(column + DX[direction], row + DY[direction])) {
+            return false;
+        }
+        int x = 2 * column + 1 + DX[direction];
+        int y = 2 * row + 1 + DY[direction];
+        // These passages sit next to cells that finish() or the corners force open and must stay walls
+        if (evenWidth && x == width - 3 && y == 2) {
+            return false;
+        }
+        if (evenHeight && x == 2 && y == height - 3) {
+            return false;
+        }
+        return !(x == width - 3 && y == height - 3);
+    }
+}
@@ -0,0 +1,235 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class holding a set of mazes generated ahead of time, read from a memory mapped file so any maze can be loaded
+ * without reading the others.
+ * <p>
+ * The file is little endian:
+ * <pre>
+ *   4 bytes   magic "MZCP"
+ *   4 bytes   version
+ *   4 bytes   maze count
+ *   16 bytes  per maze: offset of its walls from the start of the file (8), width (4), height (4)
+ *   ...       the walls of each maze, one bit per cell in row order with no padding between rows, in whole longs
+ * </pre>
+ * A set bit is a wall, as in {@link MazeGrid}. The whole file is mapped at once, so it must be under 2 GB.
+ */
+public class MazeCorpus implements Closeable {
+    private static final int MAGIC = 'M' | 'Z' << 8 | 'C' << 16 | 'P' << 24;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int INDEX_ENTRY_BYTES = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+
+    private MazeCorpus(FileChannel channel, MappedByteBuffer buffer, int size){
+        this.channel = channel;
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    /**
+     * Maps a corpus file and checks its header and index. The mazes themselves are not read.
+     * @param path the corpus file.
+     * @return the open corpus.
+     * @throws IOException if the file cannot be mapped or is not a valid corpus.
+     */
+    public static MazeCorpus open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Corpus is too large to map: " + length + " bytes");
+            }
+            if (length < HEADER_BYTES) {
+                throw new IOException("Not a maze corpus");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a maze corpus");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported corpus version " + buffer.getInt(4));
+            }
+            int size = buffer.getInt(8);
+            if (size < 0 || HEADER_BYTES + (long) size * INDEX_ENTRY_BYTES > length) {
+                throw new IOException("Corpus index is truncated");
+            }
+            for (int i = 0; i < size; i++) {
+                int entry = HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+                long offset = buffer.getLong(entry);
+                int width = buffer.getInt(entry + 8);
+                int height = buffer.getInt(entry + 12);
+                if (width < 1 || height < 1 || offset < 0 || offset + dataBytes(width, height) > length) {
+                    throw new IOException("Corpus entry " + i + " is corrupt");
+                }
+            }
+            return new MazeCorpus(channel, buffer, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of mazes in the corpus.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Loads one maze, touching only its index entry and its walls.
+     * @param index which maze, from 0 to size() - 1.
+     * @return the maze.
+     */
+    public MazeGrid get(int index){
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("No maze " + index + " in a corpus of " + size);
+        }
+        int entry = HEADER_BYTES + index * INDEX_ENTRY_BYTES;
+        int offset = (int) buffer.getLong(entry);
+        int width = buffer.getInt(entry + 8);
+        int height = buffer.getInt(entry + 12);
+
+        MazeGrid maze = new MazeGrid(width, height);
+        int wordsPerRow = maze.getWordsPerRow();
+        long rowStart = 0;
+        for (int y = 0; y < height; y++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                maze.setWord(y, k, bitsAt(offset, rowStart + 64L * k));
+            }
+            rowStart += width;
+        }
+        return maze;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a corpus file, replacing any file already there.
+     * @param path the file to write.
+     * @param mazes the mazes, in the order they are numbered.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path path, List<MazeGrid> mazes) throws IOException {
+        long offset = HEADER_BYTES + (long) mazes.size() * INDEX_ENTRY_BYTES;
+        ByteBuffer header = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(mazes.size());
+        for (MazeGrid maze : mazes) {
+            header.putLong(offset).putInt(maze.getWidth()).putInt(maze.getHeight());
+            offset += dataBytes(maze.getWidth(), maze.getHeight());
+        }
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            for (MazeGrid maze : mazes) {
+                writeFully(channel, pack(maze));
+            }
+        }
+    }
+
+    /**
+     * Generates a corpus from the command line.
+     * Usage: MazeCorpus FILE COUNT [--width N] [--height N] [--generator validated|constructive|parallel] [--seed N]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: MazeCorpus FILE COUNT [--width N] [--height N]"
+                    + " [--generator validated|constructive|parallel] [--seed N]");
+            return;
+        }
+        GameOptions options;
+        int count;
+        try {
+            count = Integer.parseInt(args[1]);
+            String[] rest = new String[args.length - 2];
+            System.arraycopy(args, 2, rest, 0, rest.length);
+            options = GameOptions.parse(rest);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        RandomStreams streams = options.getSeed() != null ? new RandomStreams(options.getSeed())
+                : RandomStreams.withRandomSeed();
+        MazeGenerator generator = new MazeGenerator(options.getWidth(), options.getHeight(), streams.getGeneration());
+        List<MazeGrid> mazes = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            mazes.add(generator.generate(options.getGenerationMode()));
+        }
+        Path path = Paths.get(args[0]);
+        write(path, mazes);
+        System.out.println("Wrote " + count + " mazes to " + path + " in " + (System.nanoTime() - start) / 1_000_000
+                + " ms, seed " + streams.getSeed());
+    }
+
+    /**
+     * Reads 64 bits of a maze's bit stream starting at any bit, as two aligned longs shifted together.
+     */
+    private long bitsAt(int offset, long bit){
+        int word = offset + (int) (bit >>> 6) * Long.BYTES;
+        int shift = (int) (bit & 63);
+        long low = word + Long.BYTES <= buffer.limit() ? buffer.getLong(word) : 0L;
+        if (shift == 0) {
+            return low;
+        }
+        int next = word + Long.BYTES;
+        long high = next + Long.BYTES <= buffer.limit() ? buffer.getLong(next) : 0L;
+        return low >>> shift | high << (64 - shift);
+    }
+
+    private static ByteBuffer pack(MazeGrid maze){
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        long[] packed = new long[(int) (dataBytes(width, height) / Long.BYTES)];
+        int wordsPerRow = maze.getWordsPerRow();
+        long bit = 0;
+        for (int y = 0; y < height; y++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                long bits = maze.getWord(y, k);
+                int count = Math.min(64, width - 64 * k);
+                int shift = (int) (bit & 63);
+                int index = (int) (bit >>> 6);
+                packed[index] |= bits << shift;
+                if (shift != 0 && shift + count > 64) {
+                    packed[index + 1] |= bits >>> (64 - shift);
+                }
+                bit += count;
+            }
+        }
+        ByteBuffer data = ByteBuffer.allocate(packed.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        data.asLongBuffer().put(packed);
+        return data;
+    }
+
+    private static long dataBytes(int width, int height){
+        return ((long) width * height + 63) / 64 * Long.BYTES;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
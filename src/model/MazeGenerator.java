@@ -1,64 +1,203 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 /**
  * Class responsible for generating the maze.
  */
 public class MazeGenerator {
-    private static final char WALL = '#';
-    private static final char OPEN = ' ';
-    private static final int WIDTH = 20;
-    private static final int HEIGHT = 15;
-    private final Random random = new Random();
+    public static final int DEFAULT_WIDTH = 20;
+    public static final int DEFAULT_HEIGHT = 15;
+    public static final int MIN_SIZE = 7;
+    public static final double REMOVAL_PROBABILITY = 0.2;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final RandomGenerator random;
+    private final CellFrontier walls;
+    private final long[] blocked;
+    private int lastRetryCount;
+    private double removalProbability = REMOVAL_PROBABILITY;
+
+    public MazeGenerator(){
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    /**
+     * Creates a generator for mazes of the given size, border included.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     */
+    public MazeGenerator(int width, int height){
+        this(width, height, new SplittableRandom());
+    }
+
+    /**
+     * Creates a generator for mazes of the given size, border included, drawing from the given source of randomness so
+     * the same seed always produces the same mazes.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     * @param random source of randomness for every maze this generator builds.
+     */
+    public MazeGenerator(int width, int height, RandomGenerator random){
+        checkSize(width, height);
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.random = random;
+        this.walls = new CellFrontier(width * height / 4);
+        this.blocked = new long[(width + 63) >>> 6];
+    }
+
+    /**
+     * Generates a maze using the given strategy.
+     * @param mode how the maze should be generated.
+     * @return A generated valid maze.
+     */
+    public MazeGrid generate(GenerationMode mode) {
+        MazeGrid maze;
+        switch (mode) {
+            case CONSTRUCTIVE:
+                maze = generateConstructiveMaze();
+                break;
+            case PARALLEL:
+                maze = generateParallelMaze(ForkJoinPool.commonPool());
+                break;
+            case VALIDATED:
+            default:
+                maze = generateValidMaze();
+                break;
+        }
+        return maze;
+    }
 
     /**
      * Generates a valid maze and makes sure it has a valid structure.
      * @return A generated valid maze.
      */
-    public char[][] generateValidMaze() {
-        char[][] maze;
+    public MazeGrid generateValidMaze() {
+        long start = GameMetrics.start();
+        GameEvents.GenerateValidMaze event = new GameEvents.GenerateValidMaze();
+        event.begin();
+        MazeGrid maze;
+        int attempts = 0;
 
         do {
             maze = generateMaze();
-            addCycles(maze, 0.2);
+            addCycles(maze, removalProbability);
+            attempts++;
         } while (!isMazeValid(maze));
 
+        lastRetryCount = attempts - 1;
+        event.width = WIDTH;
+        event.height = HEIGHT;
+        event.retries = lastRetryCount;
+        event.commit();
+        GameMetrics.record(GameMetrics.Phase.GENERATE_VALID_MAZE, start);
+        GameMetrics.count(GameMetrics.Counter.MAZE_RETRIES, lastRetryCount);
         return maze;
     }
 
     /**
-     * Generates an initial maze structure using a version of Prims Algorithm for generating mazes.
-     * @return Returns a generated maze.
+     * @return how many generated mazes the last call to {@link #generateValidMaze()} threw away before one was valid.
      */
-    public char[][] generateMaze() {
-        char[][] maze = new char[HEIGHT][WIDTH];
+    public int getLastRetryCount() {
+        return lastRetryCount;
+    }
 
-        // Fill maze with walls
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                maze[y][x] = WALL;
-            }
+    /**
+     * Sets how likely each wall that can go is to be removed to make cycles, in every generation mode. More cycles give
+     * the player more ways around the cats.
+     * @param removalProbability between 0 and 1, REMOVAL_PROBABILITY unless set.
+     */
+    public void setRemovalProbability(double removalProbability) {
+        checkRemovalProbability(removalProbability);
+        this.removalProbability = removalProbability;
+    }
+
+    /**
+     * Method which checks a maze size the way the constructor does, for callers that build their generators later on
+     * other threads.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     * @throws IllegalArgumentException if the maze would be smaller than MIN_SIZE either way.
+     */
+    static void checkSize(int width, int height) {
+        if (width < MIN_SIZE || height < MIN_SIZE) {
+            throw new IllegalArgumentException("Maze must be at least " + MIN_SIZE + "x" + MIN_SIZE + ", got " + width + "x" + height);
         }
+    }
 
+    /**
+     * Method which checks a removal probability the way setRemovalProbability does.
+     * @param removalProbability the probability to check.
+     * @throws IllegalArgumentException if it is not between 0 and 1.
+     */
+    static void checkRemovalProbability(double removalProbability) {
+        if (!(removalProbability >= 0 && removalProbability <= 1)) {
+            throw new IllegalArgumentException("Removal probability must be between 0 and 1, got " + removalProbability);
+        }
+    }
+
+    /**
+     * Generates a valid maze without ever retrying. The maze is carved on a lattice where the 2x2 rules hold by
+     * construction, so the time taken only depends on the number of cells.
+     * @return A generated valid maze.
+     */
+    public MazeGrid generateConstructiveMaze() {
+        MazeGrid maze = new MazeGrid(WIDTH, HEIGHT);
+        maze.fillWalls();
+
+        LatticeCarver carver = new LatticeCarver(maze);
+        carver.carve(0, 0, carver.getColumns(), carver.getRows(), removalProbability, random);
+        carver.finish();
+        ensureCornerOpenness(maze);
+
+        return maze;
+    }
+
+    /**
+     * Generates a valid maze the same way as {@link #generateConstructiveMaze()}, but carves it in tiles on the given
+     * pool and stitches the tiles together afterwards. Meant for mazes with millions of cells; smaller mazes end up as a
+     * single tile.
+     * @param pool the fork-join pool the tiles are carved on.
+     * @return A generated valid maze.
+     */
+    public MazeGrid generateParallelMaze(ForkJoinPool pool) {
+        MazeGrid maze = new MazeGrid(WIDTH, HEIGHT);
+        maze.fillWalls();
+
+        LatticeCarver carver = new LatticeCarver(maze);
+        new ParallelMazeCarver(carver).carve(removalProbability, random, pool);
+        carver.finish();
+        ensureCornerOpenness(maze);
+
+        return maze;
+    }
+
+    /**
+     * Generates an initial maze structure using a version of Prims Algorithm for generating mazes.
+     * @return Returns a generated maze.
+     */
+    public MazeGrid generateMaze() {
+        MazeGrid maze = new MazeGrid(WIDTH, HEIGHT);
+        maze.fillWalls();
 
         int startingX = 1 + random.nextInt((WIDTH - 2) / 2) * 2;
         int startingY = 1 + random.nextInt((HEIGHT - 2) / 2) * 2;
-        maze[startingY][startingX] = OPEN;
+        maze.setOpen(startingX, startingY);
 
-        List<int[]> walls = new ArrayList<>();
-        addWalls(maze, walls, startingX, startingY);
+        walls.clear();
+        addWalls(maze, startingX, startingY);
 
         while (!walls.isEmpty()) {
-            int[] wall = walls.remove(random.nextInt(walls.size()));
-            int wallX = wall[0];
-            int wallY = wall[1];
+            int wall = walls.removeRandom(random);
+            int wallX = wall % WIDTH;
+            int wallY = wall / WIDTH;
 
             if (canBePath(maze, wallX, wallY)) {
                 makePath(maze, wallX, wallY);
-                addWalls(maze, walls, wallX, wallY);
+                addWalls(maze, wallX, wallY);
             }
         }
 
@@ -69,67 +208,67 @@ public class MazeGenerator {
 
     /**
      * Ensures that the corners of the maze are always open
-     * @param maze The 2D array representing the maze.
+     * @param maze The bitboard holding the maze walls.
      */
-    private void ensureCornerOpenness(char[][] maze) {
-        maze[1][1] = OPEN; // Top-left corner
-        maze[1][2] = OPEN;
-        maze[2][1] = OPEN;
+    private void ensureCornerOpenness(MazeGrid maze) {
+        maze.setOpen(1, 1); // Top-left corner
+        maze.setOpen(2, 1);
+        maze.setOpen(1, 2);
 
-        maze[1][WIDTH - 2] = OPEN; // Top-right corner
-        maze[1][WIDTH - 3] = OPEN;
-        maze[2][WIDTH - 2] = OPEN;
+        maze.setOpen(WIDTH - 2, 1); // Top-right corner
+        maze.setOpen(WIDTH - 3, 1);
+        maze.setOpen(WIDTH - 2, 2);
 
-        maze[HEIGHT - 2][1] = OPEN; // Bottom-left corner
-        maze[HEIGHT - 3][1] = OPEN;
-        maze[HEIGHT - 2][2] = OPEN;
+        maze.setOpen(1, HEIGHT - 2); // Bottom-left corner
+        maze.setOpen(1, HEIGHT - 3);
+        maze.setOpen(2, HEIGHT - 2);
 
-        maze[HEIGHT - 2][WIDTH - 2] = OPEN; // Bottom-right corner
-        maze[HEIGHT - 3][WIDTH - 2] = OPEN;
-        maze[HEIGHT - 2][WIDTH - 3] = OPEN;
+        maze.setOpen(WIDTH - 2, HEIGHT - 2); // Bottom-right corner
+        maze.setOpen(WIDTH - 2, HEIGHT - 3);
+        maze.setOpen(WIDTH - 3, HEIGHT - 2);
     }
 
     /**
-     * Adds walls to the list of walls in the current position.
-     * @param maze 2D array representing the maze.
-     * @param walls The list of walls to be added.
+     * Adds the walls two cells away from the current position to the frontier.
+     * @param maze The bitboard holding the maze walls.
      * @param x The x coordinate of the current position.
      * @param y The y coordinate of the current position.
      */
-    private void addWalls(char[][] maze, List<int[]> walls, int x, int y) {
-        if (x > 1 && maze[y][x - 2] == WALL) {
-            walls.add(new int[]{x - 2, y});
+    private void addWalls(MazeGrid maze, int x, int y) {
+        int cell = y * WIDTH + x;
+        if (x > 1 && maze.isWall(x - 2, y)) {
+            walls.add(cell - 2);
         }
-        if (x < WIDTH - 3 && maze[y][x + 2] == WALL) {
-            walls.add(new int[]{x + 2, y});
+        if (x < WIDTH - 3 && maze.isWall(x + 2, y)) {
+            walls.add(cell + 2);
         }
-        if (y > 1 && maze[y - 2][x] == WALL) {
-            walls.add(new int[]{x, y - 2});
+        if (y > 1 && maze.isWall(x, y - 2)) {
+            walls.add(cell - 2 * WIDTH);
         }
-        if (y < HEIGHT - 3 && maze[y + 2][x] == WALL) {
-            walls.add(new int[]{x, y + 2});
+        if (y < HEIGHT - 3 && maze.isWall(x, y + 2)) {
+            walls.add(cell + 2 * WIDTH);
         }
     }
 
     /**
      * Checks if the current position can be turned into a path for the maze.
-     * @param maze 2D array representing the maze.
+     * @param maze The bitboard holding the maze walls.
      * @param x The x coordinate of the current position.
      * @param y The y coordinate of the current position.
      * @return True if the position can be turned into a path, false otherwise.
      */
-    private boolean canBePath(char[][] maze, int x, int y) {
+    private boolean canBePath(MazeGrid maze, int x, int y) {
         int openCount = 0;
-        if (x > 1 && maze[y][x - 2] == OPEN) {
+        if (x > 1 && !maze.isWall(x - 2, y)) {
             openCount++;
         }
-        if (x < WIDTH - 2 && maze[y][x + 2] == OPEN) {
+        if (x < WIDTH - 2 && !maze.isWall(x + 2, y)) {
             openCount++;
         }
-        if (y > 1 && maze[y - 2][x] == OPEN) {
+        if (y > 1 && !maze.isWall(x, y - 2)) {
             openCount++;
         }
-        if (y < HEIGHT - 2 && maze[y + 2][x] == OPEN) {
+        if (y < HEIGHT - 2 && !maze.isWall(x, y + 2)) {
             openCount++;
         }
         return openCount == 1;
@@ -137,39 +276,64 @@ public class MazeGenerator {
 
     /**
      * Makes a path in the maze at the specified location
-     * @param maze 2D array representing the maze.
+     * @param maze The bitboard holding the maze walls.
      * @param x The x coordinate of the position to be turned into a path.
      * @param y The y coorindate of the position to be turned into a path.
      */
-    private void makePath(char[][] maze, int x, int y) {
-        maze[y][x] = OPEN;
-        if (x > 1 && maze[y][x - 2] == OPEN) {
-            maze[y][x - 1] = OPEN;
+    private void makePath(MazeGrid maze, int x, int y) {
+        maze.setOpen(x, y);
+        if (x > 1 && !maze.isWall(x - 2, y)) {
+            maze.setOpen(x - 1, y);
         }
-        if (x < WIDTH - 2 && maze[y][x + 2] == OPEN) {
-            maze[y][x + 1] = OPEN;
+        if (x < WIDTH - 2 && !maze.isWall(x + 2, y)) {
+            maze.setOpen(x + 1, y);
         }
-        if (y > 1 && maze[y - 2][x] == OPEN) {
-            maze[y - 1][x] = OPEN;
+        if (y > 1 && !maze.isWall(x, y - 2)) {
+            maze.setOpen(x, y - 1);
         }
-        if (y < HEIGHT - 2 && maze[y + 2][x] == OPEN) {
-            maze[y + 1][x] = OPEN;
+        if (y < HEIGHT - 2 && !maze.isWall(x, y + 2)) {
+            maze.setOpen(x, y + 1);
         }
     }
 
     /**
-     * Randomly removes some walls from the maze to create cycles.
-     * @param maze 2D array representing the maze.
+     * Randomly removes some walls from the maze to create cycles. Works a row at a time: the cells that may be opened
+     * without creating a 2x2 open block are worked out 64 at a time, then only the walls in each word are visited.
+     * @param maze The bitboard holding the maze walls.
      * @param removalProbability The probability to remove a wall.
      */
-    private void addCycles(char[][] maze, double removalProbability) {
+    private void addCycles(MazeGrid maze, double removalProbability) {
+        long start = GameMetrics.start();
+        GameEvents.AddCycles event = new GameEvents.AddCycles();
+        event.begin();
+        removeWalls(maze, removalProbability);
+        event.width = WIDTH;
+        event.height = HEIGHT;
+        event.commit();
+        GameMetrics.record(GameMetrics.Phase.ADD_CYCLES, start);
+    }
+
+    /**
+     * Does the work of addCycles, which times it.
+     */
+    private void removeWalls(MazeGrid maze, double removalProbability) {
+        int wordsPerRow = maze.getWordsPerRow();
         for (int attempt = 0; attempt < 5; attempt++) {
             for (int y = 1; y < HEIGHT - 1; y++) {
-                for (int x = 1; x < WIDTH - 1; x++) {
-                    if (maze[y][x] == WALL && random.nextDouble() < removalProbability) {
-                        if (x > 0 && x < WIDTH - 1 && y > 0 && y < HEIGHT - 1) {
-                            if (!creates2x2OpenBlock(maze, x, y)) {
-                                maze[y][x] = OPEN;
+                for (int k = 0; k < wordsPerRow; k++) {
+                    blocked[k] = creates2x2OpenBlock(maze, y, k);
+                }
+                for (int k = 0; k < wordsPerRow; k++) {
+                    long walls = maze.getWord(y, k) & MazeGrid.columnMask(k, 1, WIDTH - 2);
+                    while (walls != 0) {
+                        int x = (k << 6) + Long.numberOfTrailingZeros(walls);
+                        walls &= walls - 1;
+                        if (random.nextDouble() < removalProbability && (blocked[k] & (1L << x)) == 0) {
+                            maze.setOpen(x, y);
+                            // Opening x can only complete a block for its right neighbour, which is still to come
+                            if ((!maze.isWall(x, y - 1) && !maze.isWall(x + 1, y - 1))
+                                    || (!maze.isWall(x, y + 1) && !maze.isWall(x + 1, y + 1))) {
+                                blocked[(x + 1) >>> 6] |= 1L << (x + 1);
                             }
                         }
                     }
@@ -179,39 +343,59 @@ public class MazeGenerator {
     }
 
     /**
-     * Validates the maze has no invalid structures such as 2x2 spaces.
-     * @param maze 2D array representing the maze.
+     * Validates the maze has no invalid structures such as 2x2 spaces. Each pair of rows is checked 64 columns at a time:
+     * a cell starts a 2x2 block when it and its right neighbour are the same in both rows.
+     * @param maze The bitboard holding the maze walls.
      * @return true if the maze is valid, false otherwise.
      */
-    private static boolean isMazeValid(char[][] maze) {
-        for (int y = 1; y < HEIGHT - 1; y++) {
-            for (int x = 1; x < WIDTH - 1; x++) {
+    private static boolean isMazeValid(MazeGrid maze) {
+        int width = maze.getWidth();
+        int wordsPerRow = maze.getWordsPerRow();
+        for (int y = 1; y < maze.getHeight() - 1; y++) {
+            for (int k = 0; k < wordsPerRow; k++) {
+                long top = maze.getWord(y, k);
+                long bottom = maze.getWord(y + 1, k);
+                long nextTop = maze.getWord(y, k + 1);
+                long nextBottom = maze.getWord(y + 1, k + 1);
 
-                // Check for 2x2 open space
-                if (maze[y][x] == OPEN &&
-                        maze[y][x + 1] == OPEN &&
-                        maze[y + 1][x] == OPEN &&
-                        maze[y + 1][x + 1] == OPEN) {
-                    return false;
-                }
+                long walls = top & bottom;
+                long nextWalls = nextTop & nextBottom;
+                long open = ~top & ~bottom;
+                long nextOpen = ~nextTop & ~nextBottom;
 
-                // Check for 2x2 wall space
-                if (maze[y][x] == WALL &&
-                        maze[y][x + 1] == WALL &&
-                        maze[y + 1][x] == WALL &&
-                        maze[y + 1][x + 1] == WALL) {
+                long wallBlocks = walls & ((walls >>> 1) | (nextWalls << 63));
+                long openBlocks = open & ((open >>> 1) | (nextOpen << 63));
+                if (((wallBlocks | openBlocks) & MazeGrid.columnMask(k, 1, width - 2)) != 0) {
                     return false;
                 }
             }
         }
         return true;
     }
-    private boolean creates2x2OpenBlock(char[][] maze, int x, int y) {
-        if (maze[y - 1][x] == OPEN && maze[y][x - 1] == OPEN && maze[y - 1][x - 1] == OPEN) return true;
-        if (maze[y - 1][x] == OPEN && maze[y][x + 1] == OPEN && maze[y - 1][x + 1] == OPEN) return true;
-        if (maze[y + 1][x] == OPEN && maze[y][x - 1] == OPEN && maze[y + 1][x - 1] == OPEN) return true;
-        if (maze[y + 1][x] == OPEN && maze[y][x + 1] == OPEN && maze[y + 1][x + 1] == OPEN) return true;
-        return false;
+
+    /**
+     * Works out which cells of one word of a row would complete a 2x2 open block if they were opened, that is cells
+     * where a neighbour on the same row and the two cells above or below them are all open.
+     * @param maze The bitboard holding the maze walls.
+     * @param y The row being checked, must not be the first or last row.
+     * @param k The word of the row being checked.
+     * @return a mask with a bit set for every cell that must stay a wall.
+     */
+    private static long creates2x2OpenBlock(MazeGrid maze, int y, int k) {
+        long up = ~maze.getWord(y - 1, k);
+        long row = ~maze.getWord(y, k);
+        long down = ~maze.getWord(y + 1, k);
+        long upRow = up & row;
+        long downRow = down & row;
+        long previousUpRow = ~maze.getWord(y - 1, k - 1) & ~maze.getWord(y, k - 1);
+        long nextUpRow = ~maze.getWord(y - 1, k + 1) & ~maze.getWord(y, k + 1);
+        long previousDownRow = ~maze.getWord(y + 1, k - 1) & ~maze.getWord(y, k - 1);
+        long nextDownRow = ~maze.getWord(y + 1, k + 1) & ~maze.getWord(y, k + 1);
+
+        long leftUp = (upRow << 1) | (previousUpRow >>> 63);
+        long rightUp = (upRow >>> 1) | (nextUpRow << 63);
+        long leftDown = (downRow << 1) | (previousDownRow >>> 63);
+        long rightDown = (downRow >>> 1) | (nextDownRow << 63);
+        return (up & (leftUp | rightUp)) | (down & (leftDown | rightDown));
     }
 }
-
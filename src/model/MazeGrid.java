@@ -0,0 +1,164 @@
+package model;
+
+/**
+ * Class holding the walls of a maze as a bitboard. Every row is stored as a run of longs in one flat array, one bit per
+ * cell, where a set bit is a wall. Only terrain lives here, entities such as the player, cats and cheese are kept by
+ * {@link GameState}. Bits past the width of a row are always clear.
+ */
+public class MazeGrid {
+    private static final char WALL = '#';
+    private static final char OPEN = ' ';
+
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] words;
+    private volatile JunctionGraph junctionGraph;
+
+    /**
+     * Creates a maze of the given size where every cell is open.
+     * @param width number of columns in the maze.
+     * @param height number of rows in the maze.
+     */
+    public MazeGrid(int width, int height){
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Maze dimensions must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Builds a bitboard from a character maze. '#' is a wall, anything else is open.
+     * @param maze 2D array representing the maze.
+     * @return the bitboard holding the walls of the maze.
+     */
+    public static MazeGrid fromChars(char[][] maze){
+        MazeGrid grid = new MazeGrid(maze[0].length, maze.length);
+        for (int y = 0; y < grid.height; y++) {
+            for (int x = 0; x < grid.width; x++) {
+                if (maze[y][x] == WALL) {
+                    grid.setWall(x, y);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Converts the bitboard back to a character maze of walls ('#') and open cells (' ').
+     * @return 2D array representing the maze.
+     */
+    public char[][] toChars(){
+        char[][] maze = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                maze[y][x] = isWall(x, y) ? WALL : OPEN;
+            }
+        }
+        return maze;
+    }
+
+    public int getWidth(){
+        return width;
+    }
+
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Checks a single cell. The coordinates must be inside the maze.
+     * @param x the x coordinate of the cell.
+     * @param y the y coordinate of the cell.
+     * @return true if the cell is a wall, false if it is open.
+     */
+    public boolean isWall(int x, int y){
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void setWall(int x, int y){
+        words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+
+    public void setOpen(int x, int y){
+        words[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+    }
+
+    /**
+     * Turns every cell of the maze into a wall.
+     */
+    public void fillWalls(){
+        long lastWord = columnMask(wordsPerRow - 1, 0, width - 1);
+        for (int y = 0; y < height; y++) {
+            int base = y * wordsPerRow;
+            for (int k = 0; k < wordsPerRow - 1; k++) {
+                words[base + k] = -1L;
+            }
+            words[base + wordsPerRow - 1] = lastWord;
+        }
+    }
+
+    /**
+     * Returns the junction graph of the maze, building it the first time a game needs it, which is the first cheese
+     * respawn. Mazes that are only generated, pooled or written to a corpus never pay for it. Changing walls does not
+     * touch the graph, so the setters stay plain bit operations that carvers on several threads can call; a maze is
+     * not changed once a game is played on it. Building the same walls twice gives the same graph, so threads racing
+     * on the first use are harmless.
+     * @return the junction graph for the walls.
+     */
+    public JunctionGraph getJunctionGraph(){
+        JunctionGraph graph = junctionGraph;
+        if (graph == null) {
+            graph = JunctionGraph.build(this);
+            junctionGraph = graph;
+        }
+        return graph;
+    }
+
+    int getWordsPerRow(){
+        return wordsPerRow;
+    }
+
+    /**
+     * Reads 64 cells of a row at once. Words outside the row read as 0 so callers can look one word past either end.
+     * @param y the row to read.
+     * @param word index of the word in the row, cell x is bit (x % 64) of word (x / 64).
+     * @return the wall bits of that word.
+     */
+    long getWord(int y, int word){
+        if (word < 0 || word >= wordsPerRow) {
+            return 0L;
+        }
+        return words[y * wordsPerRow + word];
+    }
+
+    /**
+     * Overwrites 64 cells of a row at once. Bits past the width of the row are cleared.
+     * @param y the row to write.
+     * @param word index of the word in the row, cell x is bit (x % 64) of word (x / 64).
+     * @param bits the wall bits of that word.
+     */
+    void setWord(int y, int word, long bits){
+        words[y * wordsPerRow + word] = bits & columnMask(word, 0, width - 1);
+    }
+
+    /**
+     * Builds a mask of the bits in one word that fall inside a column range.
+     * @param word index of the word in a row.
+     * @param fromX first column of the range.
+     * @param toX last column of the range, inclusive.
+     * @return the mask of columns fromX..toX that live in this word.
+     */
+    static long columnMask(int word, int fromX, int toX){
+        int low = word << 6;
+        int from = Math.max(fromX - low, 0);
+        int to = Math.min(toX - low, 63);
+        if (from > to) {
+            return 0L;
+        }
+        return (-1L >>> (63 - to)) & (-1L << from);
+    }
+}
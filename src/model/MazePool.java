@@ -0,0 +1,153 @@
+package model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * Class holding a bounded pool of mazes generated ahead of time by background threads, so starting a game does not
+ * wait for the generator.
+ * <p>
+ * Producers are daemon threads, each with its own {@link MazeGenerator}, that block while the pool is full. Taking a
+ * maze is a single poll of the queue; only when the pool is empty does the caller generate a maze itself, from the
+ * randomness it hands in. Pooled mazes come from the producers' own randomness, so a seeded game only gets the maze
+ * its seed picks on a miss. Hits, misses, the slowest take and how fast producers generate are counted with adders, so
+ * reading them never slows the game down.
+ */
+public class MazePool implements AutoCloseable {
+    private final BlockingQueue<MazeGrid> queue;
+    private final int width;
+    private final int height;
+    private final GenerationMode mode;
+    private final Thread[] producers;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder producingNanos = new LongAdder();
+    private final LongAccumulator slowestTakeNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates the pool and starts its producers straight away.
+     * @param capacity how many mazes the pool holds at most.
+     * @param producerCount how many threads fill the pool.
+     * @param width number of columns in each maze.
+     * @param height number of rows in each maze.
+     * @param mode how each maze is generated.
+     */
+    public MazePool(int capacity, int producerCount, int width, int height, GenerationMode mode){
+        if (capacity < 1 || producerCount < 1) {
+            throw new IllegalArgumentException("Pool needs a capacity and producer count of at least 1, got "
+                    + capacity + " and " + producerCount);
+        }
+        // Fails here rather than on a producer thread if the size is not allowed
+        MazeGenerator.checkSize(width, height);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.width = width;
+        this.height = height;
+        this.mode = mode;
+        this.producers = new Thread[producerCount];
+        for (int i = 0; i < producerCount; i++) {
+            producers[i] = Thread.ofPlatform().daemon().name("maze-producer-" + i).start(this::produce);
+        }
+    }
+
+    /**
+     * Takes a ready maze, or generates one on the calling thread if the pool is empty.
+     * @param random randomness for generating a maze on a miss, normally the game's generation stream.
+     * @return a maze of the pool's size.
+     */
+    public MazeGrid take(RandomGenerator random){
+        long start = System.nanoTime();
+        MazeGrid maze = queue.poll();
+        if (maze != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            maze = new MazeGenerator(width, height, random).generate(mode);
+        }
+        slowestTakeNanos.accumulate(System.nanoTime() - start);
+        return maze;
+    }
+
+    /**
+     * @return how many mazes are ready right now.
+     */
+    public int getDepth(){
+        return queue.size();
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * @return the share of takes served from the pool, 0 before the first take.
+     */
+    public double getHitRate(){
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return how many mazes the producers have generated.
+     */
+    public long getProduced(){
+        return produced.sum();
+    }
+
+    /**
+     * @return mazes generated per second of producer time, summed over all producers.
+     */
+    public double getProducerThroughput(){
+        long nanos = producingNanos.sum();
+        return nanos == 0 ? 0 : produced.sum() * 1e9 / nanos * producers.length;
+    }
+
+    /**
+     * @return the longest any take has taken, in nanoseconds.
+     */
+    public long getSlowestTakeNanos(){
+        return slowestTakeNanos.get();
+    }
+
+    /**
+     * @return a one line summary of the pool's counters.
+     */
+    public String describe(){
+        return String.format("depth %d, hits %d, misses %d (hit rate %.1f%%), produced %d at %.1f mazes/s,"
+                        + " slowest take %.3f ms", getDepth(), getHits(), getMisses(), getHitRate() * 100,
+                getProduced(), getProducerThroughput(), getSlowestTakeNanos() / 1e6);
+    }
+
+    /**
+     * Stops the producers. Mazes already in the pool can still be taken.
+     */
+    @Override
+    public void close(){
+        for (Thread producer : producers) {
+            producer.interrupt();
+        }
+    }
+
+    private void produce(){
+        MazeGenerator generator = new MazeGenerator(width, height);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                MazeGrid maze = generator.generate(mode);
+                producingNanos.add(System.nanoTime() - start);
+                produced.increment();
+                queue.put(maze);
+            }
+        } catch (InterruptedException e) {
+            // Closed while waiting for room, nothing left to do
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Class responsible for starting games on the maze the options ask for: one picked from a {@link MazeCorpus}, one taken
+ * from a {@link MazePool} kept generated ahead of time, or one generated on the spot. The console game and both servers
+ * start their games through it, so they all pick mazes the same way.
+ */
+public class MazeSource implements AutoCloseable {
+    private final GameOptions options;
+    private final MazeCorpus corpus;
+    private final MazePool pool;
+
+    /**
+     * Opens the corpus or starts the pool named by the options, if any.
+     * @param options the settings every game is started with.
+     * @throws IOException if the corpus cannot be read.
+     */
+    public MazeSource(GameOptions options) throws IOException {
+        this.options = options;
+        this.corpus = options.getCorpusPath() != null ? MazeCorpus.open(Paths.get(options.getCorpusPath())) : null;
+        this.pool = corpus == null && options.getPoolSize() > 0 ? Game.pool(options) : null;
+    }
+
+    /**
+     * Method which sets up a game. The corpus maze is picked with the generation stream, so the same seed picks the
+     * same maze. A pooled game only uses the stream when the pool is empty, see {@link MazePool}.
+     * @param streams the game's randomness.
+     * @return the new game.
+     */
+    public GameState newGame(RandomStreams streams){
+        if (corpus != null) {
+            return Game.newGame(corpus.get(streams.getGeneration().nextInt(corpus.size())), options, streams);
+        }
+        if (pool != null) {
+            return Game.newGame(pool.take(streams.getGeneration()), options, streams);
+        }
+        return Game.newGame(options, streams);
+    }
+
+    /**
+     * @return the pool games take their mazes from, or null if there is none.
+     */
+    public MazePool getPool(){
+        return pool;
+    }
+
+    /**
+     * Stops the pool's producers and unmaps the corpus.
+     */
+    @Override
+    public void close() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        if (corpus != null) {
+            corpus.close();
+        }
+    }
+}
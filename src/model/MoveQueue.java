@@ -0,0 +1,70 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class holding the player's moves between the thread reading input and the thread running the game.
+ * <p>
+ * A fixed size ring of chars for exactly one producer and one consumer. Neither side ever blocks or allocates: the
+ * producer publishes a move by advancing the tail with a release store, and the consumer reads everything up to the
+ * tail it sees and hands the slots back by advancing the head the same way. When the ring is full new moves are dropped,
+ * since a player that far ahead of the game has lost track of it anyway.
+ */
+public class MoveQueue {
+    private final char[] moves;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity how many moves can wait at once, rounded up to a power of two.
+     */
+    public MoveQueue(int capacity){
+        if (capacity < 1 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("Queue capacity must be between 1 and " + (1 << 20) + ": " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.moves = new char[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds a move. Only one thread may call this.
+     * @param move the move to add.
+     * @return false if the queue was full and the move was dropped.
+     */
+    public boolean offer(char move){
+        long t = tail.get();
+        if (t - head.getAcquire() == moves.length) {
+            return false;
+        }
+        moves[(int) t & mask] = move;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Takes the oldest move. Only one thread may call this.
+     * @return the move, or 0 if there is none.
+     */
+    public char poll(){
+        long h = head.get();
+        if (h == tail.getAcquire()) {
+            return 0;
+        }
+        char move = moves[(int) h & mask];
+        head.setRelease(h + 1);
+        return move;
+    }
+
+    /**
+     * @return how many moves are waiting, which may be out of date as soon as it is read.
+     */
+    public int size(){
+        return (int) (tail.getAcquire() - head.getAcquire());
+    }
+
+    public int getCapacity(){
+        return moves.length;
+    }
+}
@@ -0,0 +1,152 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class responsible for moving very many cats on several cores, in two phases.
+ * <p>
+ * The propose phase runs over chunks of cats on a fork-join pool and only reads the game: each cat picks its move by
+ * the same rules as the sequential turn and writes it to its own slot. The commit phase then applies the moves on the
+ * calling thread in cat order, which is the only place the positions and the occupancy grid are written. Cats may share
+ * a cell, so no two proposals ever conflict over anything but the grid counts, and those are settled by the commit.
+ * <p>
+ * Instead of one stream of random numbers, which would make each cat's draw depend on how many draws came before it,
+ * every cat gets a number computed from the session's cat seed, the turn number and its own index. So for a given seed
+ * the cats move the same way however many threads run the propose phase.
+ */
+final class ParallelCatMover {
+    static final int CHUNK_SIZE = 2048;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final GameState gameState;
+    private final RandomMovementGenerator movement;
+    private final int[] catXs;
+    private final int[] catYs;
+    private final int[] lastCatXs;
+    private final int[] lastCatYs;
+    private final byte[] proposals;
+    /** Move options for proposals made on the calling thread, so a small turn allocates nothing. */
+    private final int[] options;
+    private final long seed;
+    private final ForkJoinPool pool;
+    private long turn;
+
+    /**
+     * @param gameState the game whose cats are moved.
+     * @param movement the random movement rules, used only to read the walls.
+     * @param catXs the cats' x coordinates, owned by the game.
+     * @param catYs the cats' y coordinates, owned by the game.
+     * @param lastCatXs the cats' previous x coordinates, owned by the game.
+     * @param lastCatYs the cats' previous y coordinates, owned by the game.
+     * @param seed where every cat's random numbers are derived from.
+     * @param pool the pool the propose phase runs on.
+     */
+    ParallelCatMover(GameState gameState, RandomMovementGenerator movement, int[] catXs, int[] catYs,
+                     int[] lastCatXs, int[] lastCatYs, long seed, ForkJoinPool pool){
+        this.gameState = gameState;
+        this.movement = movement;
+        this.catXs = catXs;
+        this.catYs = catYs;
+        this.lastCatXs = lastCatXs;
+        this.lastCatYs = lastCatYs;
+        this.proposals = new byte[catXs.length];
+        this.options = new int[movement.moves.length];
+        this.seed = seed;
+        this.pool = pool;
+    }
+
+    /**
+     * Moves every cat once.
+     * @param flowField the field towards the player, already updated, or null for random movement.
+     */
+    void moveCats(FlowField flowField){
+        long turnKey = mix(seed + turn++ * GOLDEN_GAMMA);
+        if (catXs.length <= CHUNK_SIZE) {
+            propose(0, catXs.length, flowField, turnKey, options);
+        } else {
+            pool.invoke(new ProposeMoves(0, catXs.length, flowField, turnKey));
+        }
+        commit();
+    }
+
+    ForkJoinPool getPool(){
+        return pool;
+    }
+
+    /**
+     * Picks a move for each cat in the range without changing anything but the cats' proposal slots.
+     */
+    private void propose(int from, int to, FlowField flowField, long turnKey, int[] options){
+        for (int i = from; i < to; i++) {
+            int x = catXs[i];
+            int y = catYs[i];
+            int count = flowField != null ? flowField.nextMoves(x, y, options) : 0;
+            if (count == 0) {
+                count = movement.possibleMoves(x, y, lastCatXs[i], lastCatYs[i], options);
+            }
+            if (count == 0) {
+                proposals[i] = -1;
+            } else {
+                long random = mix(turnKey + i * GOLDEN_GAMMA);
+                proposals[i] = (byte) options[(int) (((random >>> 32) * count) >>> 32)];
+            }
+        }
+    }
+
+    /**
+     * Applies the proposed moves in cat order.
+     */
+    private void commit(){
+        int[][] moves = movement.moves;
+        for (int i = 0; i < proposals.length; i++) {
+            int x = catXs[i];
+            int y = catYs[i];
+            lastCatXs[i] = x;
+            lastCatYs[i] = y;
+            int move = proposals[i];
+            if (move >= 0) {
+                gameState.updateCatPosition(i, x + moves[move][0], y + moves[move][1]);
+            }
+        }
+    }
+
+    /**
+     * The SplitMix64 finaliser, which turns consecutive inputs into well spread random bits.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Fork-join task proposing moves for a range of cats, split in half until a chunk is left.
+     */
+    private final class ProposeMoves extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient FlowField flowField;
+        private final long turnKey;
+
+        ProposeMoves(int from, int to, FlowField flowField, long turnKey){
+            this.from = from;
+            this.to = to;
+            this.flowField = flowField;
+            this.turnKey = turnKey;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from <= CHUNK_SIZE) {
+                propose(from, to, flowField, turnKey, new int[movement.moves.length]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ProposeMoves(from, middle, flowField, turnKey),
+                    new ProposeMoves(middle, to, flowField, turnKey));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+
+/**
+ * Class responsible for carving very large lattice mazes on several cores. The lattice is cut into tiles which are
+ * carved independently on a fork-join pool, then joined through one passage per edge of a random spanning tree over
+ * the tiles so the whole maze stays connected.
+ * <p>
+ * Tiles start on multiples of {@link #TILE_SIZE} lattice columns, which is a multiple of 64 grid columns, so two tiles
+ * never write to the same word of the bitboard. A leftover strip narrower than a tile is merged into the tile before
+ * it, which keeps every tile at least two cells wide and tall.
+ */
+final class ParallelMazeCarver {
+    static final int TILE_SIZE = 128;
+    private static final int RIGHT = 3;
+    private static final int DOWN = 1;
+
+    private final LatticeCarver carver;
+    private final int[] columnStarts;
+    private final int[] rowStarts;
+    private final int tilesX;
+    private final int tilesY;
+
+    ParallelMazeCarver(LatticeCarver carver){
+        this.carver = carver;
+        this.columnStarts = tileStarts(carver.getColumns());
+        this.rowStarts = tileStarts(carver.getRows());
+        this.tilesX = columnStarts.length - 1;
+        this.tilesY = rowStarts.length - 1;
+    }
+
+    /**
+     * Carves every tile on the pool, then stitches the tiles together and adds cycles along their borders.
+     * @param cycleProbability the probability of opening each passage that is not part of a spanning tree.
+     * @param random source of the per tile seeds and of the stitching, used only from the calling thread.
+     * @param pool the pool the tiles are carved on.
+     */
+    void carve(double cycleProbability, RandomGenerator random, ForkJoinPool pool){
+        long[] seeds = new long[tilesX * tilesY];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        pool.invoke(new CarveTiles(0, seeds.length, seeds, cycleProbability));
+        stitch(cycleProbability, random);
+    }
+
+    private void carveTile(int tile, long seed, double cycleProbability){
+        int tileX = tile % tilesX;
+        int tileY = tile / tilesX;
+        carver.carve(columnStarts[tileX], rowStarts[tileY], columnStarts[tileX + 1], rowStarts[tileY + 1],
+                cycleProbability, new SplittableRandom(seed));
+    }
+
+    /**
+     * Joins the tiles along a random spanning tree (Kruskal's algorithm over the shuffled tile borders), then gives
+     * every passage across a tile border the same chance of becoming a cycle as passages inside a tile.
+     */
+    private void stitch(double cycleProbability, RandomGenerator random){
+        int tileCount = tilesX * tilesY;
+        int[] borders = new int[2 * tileCount];
+        int borderCount = 0;
+        for (int tile = 0; tile < tileCount; tile++) {
+            if (tile % tilesX + 1 < tilesX) {
+                borders[borderCount++] = 2 * tile;
+            }
+            if (tile / tilesX + 1 < tilesY) {
+                borders[borderCount++] = 2 * tile + 1;
+            }
+        }
+        for (int i = borderCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = borders[i];
+            borders[i] = borders[j];
+            borders[j] = swap;
+        }
+
+        int[] parent = new int[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < borderCount; i++) {
+            int tile = borders[i] >>> 1;
+            boolean vertical = (borders[i] & 1) == 0;
+            int other = vertical ? tile + 1 : tile + tilesX;
+            int a = find(parent, tile);
+            int b = find(parent, other);
+            if (a != b) {
+                parent[a] = b;
+                connectAcross(tile, vertical, random);
+            }
+        }
+
+        for (int tile = 0; tile < tileCount; tile++) {
+            int tileX = tile % tilesX;
+            int tileY = tile / tilesX;
+            if (tileX + 1 < tilesX) {
+                int column = columnStarts[tileX + 1] - 1;
+                for (int row = rowStarts[tileY]; row < rowStarts[tileY + 1]; row++) {
+                    carver.openCycle(column, row, RIGHT, cycleProbability, random);
+                }
+            }
+            if (tileY + 1 < tilesY) {
+                int row = rowStarts[tileY + 1] - 1;
+                for (int column = columnStarts[tileX]; column < columnStarts[tileX + 1]; column++) {
+                    carver.openCycle(column, row, DOWN, cycleProbability, random);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens one passage from a tile into its right or lower neighbour, at a random point along their shared border.
+     */
+    private void connectAcross(int tile, boolean vertical, RandomGenerator random){
+        int tileX = tile % tilesX;
+        int tileY = tile / tilesX;
+        int from = vertical ? rowStarts[tileY] : columnStarts[tileX];
+        int length = vertical ? rowStarts[tileY + 1] - from : columnStarts[tileX + 1] - from;
+        int offset = random.nextInt(length);
+        for (int i = 0; i < length; i++) {
+            int position = from + (offset + i) % length;
+            boolean connected = vertical
+                    ? carver.connect(columnStarts[tileX + 1] - 1, position, RIGHT)
+                    : carver.connect(position, rowStarts[tileY + 1] - 1, DOWN);
+            if (connected) {
+                return;
+            }
+        }
+    }
+
+    private static int find(int[] parent, int tile){
+        while (parent[tile] != tile) {
+            parent[tile] = parent[parent[tile]];
+            tile = parent[tile];
+        }
+        return tile;
+    }
+
+    private static int[] tileStarts(int cells){
+        int tiles = Math.max(1, cells / TILE_SIZE);
+        int[] starts = new int[tiles + 1];
+        for (int i = 0; i < tiles; i++) {
+            starts[i] = i * TILE_SIZE;
+        }
+        starts[tiles] = cells;
+        return starts;
+    }
+
+    /**
+     * Fork-join task carving a range of tiles, split in half until a single tile is left.
+     */
+    private final class CarveTiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final long[] seeds;
+        private final double cycleProbability;
+
+        CarveTiles(int from, int to, long[] seeds, double cycleProbability){
+            this.from = from;
+            this.to = to;
+            this.seeds = seeds;
+            this.cycleProbability = cycleProbability;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from == 1) {
+                carveTile(from, seeds[from], cycleProbability);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CarveTiles(from, middle, seeds, cycleProbability),
+                    new CarveTiles(middle, to, seeds, cycleProbability));
+        }
+    }
+}
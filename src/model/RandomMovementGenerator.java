@@ -1,18 +1,26 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Class responsible for creating random movement for the cats.
  */
 public class RandomMovementGenerator {
-    private Random random = new Random();
+    private final RandomGenerator random;
     private GameState gameState;
 
     public RandomMovementGenerator(GameState gameState){
+        this(gameState, new SplittableRandom());
+    }
+
+    /**
+     * @param gameState the game whose walls the cats move between.
+     * @param random source of randomness for the moves.
+     */
+    public RandomMovementGenerator(GameState gameState, RandomGenerator random){
         this.gameState = gameState;
+        this.random = random;
     }
     public final int[][] moves = {
             {0, -1}, // UP
@@ -20,6 +28,8 @@ public class RandomMovementGenerator {
             {-1, 0}, // LEFT
             {1, 0},  // RIGHT
     };
+    private static final int[] STAY = {0, 0};
+    private final int[] possibleMoves = new int[moves.length];
 
     /**
      * Method responsible for generating random move for the cat. Tries to avoid backtracking if possible.
@@ -27,27 +37,47 @@ public class RandomMovementGenerator {
      * @param catY The current y coordinate of the cat.
      * @param lastXMoveX The x coordinate of the cat's last move.
      * @param lastYMoveY The y coordinate of the cat's last move.
-     * @return A 2d array representing the cat's next move.
+     * @return A 2d array representing the cat's next move. The array is shared and must not be modified.
      */
     public int[] generateRandomMove(int catX, int catY,int lastXMoveX, int lastYMoveY) {
-        int[] move;
-        List<int[]> possibleMoves = new ArrayList<>();
+        int possibleCount = possibleMoves(catX, catY, lastXMoveX, lastYMoveY, possibleMoves);
+        if (possibleCount == 0) {
+            return STAY;
+        }
+        return moves[possibleMoves[random.nextInt(possibleCount)]];
+    }
+
+    /**
+     * Method which lists the moves generateRandomMove picks between, each equally likely. Moves that do not backtrack
+     * are preferred, then backtracking, then staying put.
+     * @param catX The current x coordinate of the cat.
+     * @param catY The current y coordinate of the cat.
+     * @param lastXMoveX The x coordinate of the cat's last move.
+     * @param lastYMoveY The y coordinate of the cat's last move.
+     * @param out receives the indexes into moves, needs room for four.
+     * @return how many indexes were written, 0 if the cat stays where it is.
+     */
+    public int possibleMoves(int catX, int catY, int lastXMoveX, int lastYMoveY, int[] out){
+        int possibleCount = 0;
 
-        for (int[] potentialMove : moves) {
-            int newX = catX + potentialMove[0];
-            int newY = catY + potentialMove[1];
-            if (gameState.isValidMove(newX, newY) && !isBackTracking(catX, catY, potentialMove, lastXMoveX, lastYMoveY)) {
-                possibleMoves.add(potentialMove);
+        for (int i = 0; i < moves.length; i++) {
+            int newX = catX + moves[i][0];
+            int newY = catY + moves[i][1];
+            if (gameState.isValidMove(newX, newY) && !isBackTracking(catX, catY, moves[i], lastXMoveX, lastYMoveY)) {
+                out[possibleCount++] = i;
             }
         }
 
-        if (!possibleMoves.isEmpty()) {
-            move = possibleMoves.get(random.nextInt(possibleMoves.size()));
-        } else {
-            move = new int[]{lastXMoveX - catX, lastYMoveY - catY};
+        if (possibleCount > 0) {
+            return possibleCount;
         }
-
-        return move;
+        for (int i = 0; i < moves.length; i++) {
+            if (isBackTracking(catX, catY, moves[i], lastXMoveX, lastYMoveY)) {
+                out[0] = i;
+                return 1;
+            }
+        }
+        return 0;
     }
 
     /**
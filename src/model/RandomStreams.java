@@ -0,0 +1,59 @@
+package model;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Class holding the sources of randomness for one session, all split from a single seed so a whole game can be
+ * reproduced from that seed. Maze generation, spawning and cat movement each draw from their own stream, so a change
+ * in how often one of them draws does not shift what the others see.
+ */
+public class RandomStreams {
+    private final long seed;
+    private final SplittableRandom generation;
+    private final SplittableRandom spawning;
+    private final SplittableRandom cats;
+
+    /**
+     * @param seed the session seed.
+     */
+    public RandomStreams(long seed){
+        SplittableRandom root = new SplittableRandom(seed);
+        this.seed = seed;
+        this.generation = root.split();
+        this.spawning = root.split();
+        this.cats = root.split();
+    }
+
+    /**
+     * @return streams for a session with a seed picked at random.
+     */
+    public static RandomStreams withRandomSeed(){
+        return new RandomStreams(new SplittableRandom().nextLong());
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * @return the stream for building mazes.
+     */
+    public RandomGenerator getGeneration(){
+        return generation;
+    }
+
+    /**
+     * @return the stream for placing the cheese and cats.
+     */
+    public RandomGenerator getSpawning(){
+        return spawning;
+    }
+
+    /**
+     * @return the stream for moving the cats.
+     */
+    public RandomGenerator getCats(){
+        return cats;
+    }
+}
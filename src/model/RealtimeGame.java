@@ -0,0 +1,191 @@
+package model;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class responsible for playing a game in real time: the cats move on a fixed-rate timer whether or not the player
+ * does anything.
+ * <p>
+ * Moves come in through a {@link MoveQueue} filled by another thread. Every tick applies each queued move in order and
+ * then moves the cats once. Ticks are scheduled against fixed deadlines rather than by sleeping a tick after the last
+ * one, so lateness does not add up. The thread parks until just before a deadline and spins the rest of the way, which
+ * keeps the tick start steady under load. If the game falls more than a whole tick behind, the missed ticks are skipped
+ * and counted rather than run in a burst. How late each tick starts is tracked as the loop's jitter. The loop itself
+ * allocates nothing unless a Flight Recorder recording has the tick events enabled or the cats are split across
+ * threads in fork-join tasks, so in normal play the garbage collector has no reason to interrupt it.
+ */
+public class RealtimeGame {
+    /**
+     * Called after every tick, on the thread running the game.
+     */
+    public interface TickListener {
+        /**
+         * @param tick the number of the tick, counting from 0.
+         * @param result WON or LOST if the game ended on this tick, otherwise MOVED.
+         */
+        void onTick(long tick, StepResult result);
+    }
+
+    private static final long SPIN_NANOS = 100_000;
+
+    private final GameState gameState;
+    private final MoveQueue moves;
+    private final long tickNanos;
+    private volatile boolean stopped;
+    private long ticks;
+    private long skippedTicks;
+    private long lateNanos;
+    private double lateSquares;
+    private long latestNanos;
+    private long slowestTickNanos;
+
+    /**
+     * @param gameState the game to play.
+     * @param moves where the player's moves come from.
+     * @param tickMillis how often the cats move, in milliseconds.
+     */
+    public RealtimeGame(GameState gameState, MoveQueue moves, int tickMillis){
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1 ms: " + tickMillis);
+        }
+        this.gameState = gameState;
+        this.moves = moves;
+        this.tickNanos = tickMillis * 1_000_000L;
+    }
+
+    /**
+     * Runs ticks until the game is won or lost or {@link #stop()} is called.
+     * @param listener told about every tick, for example to draw the maze.
+     * @return the result that ended the game, or null if it was stopped.
+     */
+    public StepResult run(TickListener listener){
+        long deadline = System.nanoTime() + tickNanos;
+        while (!stopped) {
+            long start = waitUntil(deadline);
+            long late = start - deadline;
+            lateNanos += late;
+            lateSquares += (double) late * late;
+            latestNanos = Math.max(latestNanos, late);
+
+            StepResult result = tick();
+            listener.onTick(ticks++, result);
+            if (result != StepResult.MOVED) {
+                return result;
+            }
+
+            long end = System.nanoTime();
+            slowestTickNanos = Math.max(slowestTickNanos, end - start);
+            deadline += tickNanos;
+            if (end - deadline > tickNanos) {
+                long missed = (end - deadline) / tickNanos;
+                skippedTicks += missed;
+                deadline += missed * tickNanos;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ends the game after the current tick. May be called from any thread.
+     */
+    public void stop(){
+        stopped = true;
+    }
+
+    /**
+     * Method which applies every queued move and then moves the cats. C and M work as in the turn based game, anything
+     * else that is not a move is ignored.
+     * @return WON or LOST if the game ended, otherwise MOVED.
+     */
+    private StepResult tick(){
+        char move;
+        while ((move = moves.poll()) != 0) {
+            move = Character.toUpperCase(move);
+            if (move == 'C') {
+                gameState.changeCheeseToWin();
+            } else if (move == 'M') {
+                gameState.revealEntireMaze();
+            } else {
+                StepResult result = gameState.applyPlayerMove(move);
+                if (result == StepResult.WON || result == StepResult.LOST) {
+                    return result;
+                }
+            }
+        }
+        return gameState.advanceCats();
+    }
+
+    /**
+     * Parks until shortly before the deadline, then spins up to it.
+     * @return the time the wait ended.
+     */
+    private static long waitUntil(long deadline){
+        long now = System.nanoTime();
+        while (now < deadline) {
+            long remaining = deadline - now;
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    /**
+     * @return the number of ticks run.
+     */
+    public long getTicks(){
+        return ticks;
+    }
+
+    /**
+     * @return the number of ticks skipped because the game fell more than a tick behind.
+     */
+    public long getSkippedTicks(){
+        return skippedTicks;
+    }
+
+    /**
+     * @return how late ticks started on average, in nanoseconds.
+     */
+    public double getMeanJitterNanos(){
+        return ticks == 0 ? 0 : (double) lateNanos / ticks;
+    }
+
+    /**
+     * @return the standard deviation of how late ticks started, in nanoseconds.
+     */
+    public double getJitterDeviationNanos(){
+        if (ticks == 0) {
+            return 0;
+        }
+        double mean = getMeanJitterNanos();
+        return Math.sqrt(Math.max(0, lateSquares / ticks - mean * mean));
+    }
+
+    /**
+     * @return the latest any tick started, in nanoseconds.
+     */
+    public long getMaxJitterNanos(){
+        return latestNanos;
+    }
+
+    /**
+     * @return the longest any tick took to run, including the listener, in nanoseconds.
+     */
+    public long getSlowestTickNanos(){
+        return slowestTickNanos;
+    }
+
+    /**
+     * @return a one line summary of the tick timing.
+     */
+    public String describe(){
+        return String.format("%d ticks of %d ms, %d skipped, jitter mean %.3f ms, deviation %.3f ms, max %.3f ms,"
+                        + " slowest tick %.3f ms", ticks, tickNanos / 1_000_000, skippedTicks,
+                getMeanJitterNanos() / 1e6, getJitterDeviationNanos() / 1e6, latestNanos / 1e6,
+                slowestTickNanos / 1e6);
+    }
+}
@@ -0,0 +1,173 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Class holding a recorded game, which can be played back headless at full speed.
+ * <p>
+ * A replay is the session seed and the settings the game was started with, followed by the commands that changed the
+ * game. Everything random is drawn from streams split from the seed, so the same commands on the same seed always
+ * give the same game. The format is big endian:
+ * <pre>
+ *   4 bytes  magic "MZRP"
+ *   1 byte   version
+ *   8 bytes  seed
+ *   4 bytes  width
+ *   4 bytes  height
+ *   1 byte   generation mode (ordinal)
+ *   4 bytes  cat count
+ *   1 byte   cat behaviour (ordinal)
+ *   ...      commands, one per 4 bits, high nibble first, until the end of the file
+ * </pre>
+ * Commands are coded 1 to 6 for W, A, S, D, C and M. A zero nibble pads the last byte. Version 2 replays draw spawn
+ * positions from the free cell index, so version 1 replays would no longer play out the same and are refused.
+ */
+public class Replay {
+    static final byte[] MAGIC = {'M', 'Z', 'R', 'P'};
+    static final int VERSION = 2;
+    private static final char[] COMMANDS = {0, 'W', 'A', 'S', 'D', 'C', 'M'};
+
+    private final long seed;
+    private final GameOptions options;
+    private final char[] commands;
+
+    private Replay(long seed, GameOptions options, char[] commands){
+        this.seed = seed;
+        this.options = options;
+        this.commands = commands;
+    }
+
+    /**
+     * Reads a whole replay.
+     * @param in the replay, closed once read.
+     * @return the replay.
+     * @throws IOException if the stream cannot be read or does not hold a replay.
+     */
+    public static Replay read(InputStream in) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a replay file");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported replay version " + version);
+            }
+            long seed = data.readLong();
+            int width = data.readInt();
+            int height = data.readInt();
+            GenerationMode mode = enumAt(GenerationMode.values(), data.readUnsignedByte());
+            int catCount = data.readInt();
+            CatBehaviour behaviour = enumAt(CatBehaviour.values(), data.readUnsignedByte());
+
+            byte[] packed = data.readAllBytes();
+            char[] commands = new char[packed.length * 2];
+            int count = 0;
+            for (byte b : packed) {
+                count = decode(b >>> 4 & 0xF, commands, count);
+                count = decode(b & 0xF, commands, count);
+            }
+            return new Replay(seed, new GameOptions(width, height, mode, catCount, behaviour),
+                    Arrays.copyOf(commands, count));
+        } catch (EOFException e) {
+            throw new IOException("Replay file is truncated", e);
+        }
+    }
+
+    /**
+     * @param command a command typed by the player.
+     * @return true if the command changes the game and so belongs in a replay.
+     */
+    public static boolean isRecorded(char command){
+        return indexOf(command) > 0;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    public GameOptions getOptions(){
+        return options;
+    }
+
+    public int getCommandCount(){
+        return commands.length;
+    }
+
+    /**
+     * @return a game in the state the recorded game started in.
+     */
+    public GameState newGame(){
+        return Game.newGame(options, new RandomStreams(seed));
+    }
+
+    /**
+     * Plays every command on the game, stopping early if it is won or lost.
+     * @param gameState a game from {@link #newGame()}.
+     * @return the result of the last move played, or null if the replay holds no moves.
+     */
+    public StepResult play(GameState gameState){
+        StepResult result = null;
+        for (char command : commands) {
+            if (command == 'C') {
+                gameState.changeCheeseToWin();
+            } else if (command == 'M') {
+                gameState.revealEntireMaze();
+            } else {
+                result = gameState.step(command);
+                if (result == StepResult.WON || result == StepResult.LOST) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    static int encode(char command){
+        int code = indexOf(command);
+        if (code <= 0) {
+            throw new IllegalArgumentException("Command cannot be recorded: " + command);
+        }
+        return code;
+    }
+
+    /**
+     * @param code a command code from a replay or journal.
+     * @return the command, or 0 if the code is not one.
+     */
+    static char command(int code){
+        return code > 0 && code < COMMANDS.length ? COMMANDS[code] : 0;
+    }
+
+    private static int indexOf(char command){
+        for (int i = 1; i < COMMANDS.length; i++) {
+            if (COMMANDS[i] == command) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int decode(int code, char[] commands, int count) throws IOException {
+        if (code >= COMMANDS.length) {
+            throw new IOException("Unknown command code " + code);
+        }
+        if (code != 0) {
+            commands[count++] = COMMANDS[code];
+        }
+        return count;
+    }
+
+    private static <E extends Enum<E>> E enumAt(E[] values, int ordinal) throws IOException {
+        if (ordinal >= values.length) {
+            throw new IOException("Unknown setting " + ordinal + " in replay header");
+        }
+        return values[ordinal];
+    }
+}
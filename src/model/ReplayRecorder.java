@@ -0,0 +1,61 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class responsible for writing a replay as a game is played. See {@link Replay} for the format.
+ */
+public class ReplayRecorder implements CommandLog {
+    private final DataOutputStream out;
+    private int pending = -1;
+
+    /**
+     * Writes the header straight away, commands follow as they are recorded.
+     * @param out where the replay is written, closed along with the recorder.
+     * @param options the settings the game was started with.
+     * @param seed the session seed.
+     * @throws IOException if the header cannot be written.
+     */
+    public ReplayRecorder(OutputStream out, GameOptions options, long seed) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.write(Replay.MAGIC);
+        this.out.writeByte(Replay.VERSION);
+        this.out.writeLong(seed);
+        this.out.writeInt(options.getWidth());
+        this.out.writeInt(options.getHeight());
+        this.out.writeByte(options.getGenerationMode().ordinal());
+        this.out.writeInt(options.getCatCount());
+        this.out.writeByte(options.getCatBehaviour().ordinal());
+    }
+
+    /**
+     * Appends a command, packed two to a byte.
+     * @param command one of the commands {@link Replay#isRecorded(char)} accepts.
+     * @throws IOException if the replay cannot be written.
+     */
+    @Override
+    public void record(char command) throws IOException {
+        int code = Replay.encode(command);
+        if (pending < 0) {
+            pending = code;
+        } else {
+            out.writeByte(pending << 4 | code);
+            pending = -1;
+        }
+    }
+
+    /**
+     * Writes the last command, padded if it is alone in its byte, and closes the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (pending >= 0) {
+            out.writeByte(pending << 4);
+            pending = -1;
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class holding the settings of a server that hosts many games, read from the command line: the port, how many games
+ * may run at once and how long a player may stay idle, followed by the options every game is started with.
+ */
+public class ServerOptions {
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 300;
+
+    private int port;
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    private int idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+    private GameOptions gameOptions;
+
+    private ServerOptions(){
+    }
+
+    /**
+     * Parses command line arguments of the form --port N, --max-sessions N and --idle-timeout SECONDS. Every other
+     * argument is handed to {@link GameOptions#parse(String[])}.
+     * @param args the arguments passed to main.
+     * @param defaultPort the port to listen on if --port is not given.
+     * @return the parsed options, with defaults for anything not given.
+     * @throws IllegalArgumentException if an argument is unknown, its value is missing or malformed, or the port is
+     * outside 0 to 65535.
+     */
+    public static ServerOptions parse(String[] args, int defaultPort){
+        ServerOptions options = new ServerOptions();
+        options.port = defaultPort;
+        List<String> gameArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--port":
+                    options.port = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--max-sessions":
+                    options.maxSessions = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                case "--idle-timeout":
+                    options.idleTimeoutSeconds = Arguments.parseInt(arg, Arguments.value(args, ++i, arg));
+                    break;
+                default:
+                    gameArgs.add(arg);
+                    break;
+            }
+        }
+        if (options.port < 0 || options.port > 65535) {
+            throw new IllegalArgumentException("--port expects a port, got " + options.port);
+        }
+        options.gameOptions = GameOptions.parse(gameArgs.toArray(new String[0]));
+        return options;
+    }
+
+    /**
+     * @param program the name of the server's main class.
+     * @return a one line summary of the accepted arguments.
+     */
+    public static String usage(String program){
+        return "Usage: " + program + " [--port N] [--max-sessions N] [--idle-timeout SECONDS] [game options]";
+    }
+
+    public int getPort(){
+        return port;
+    }
+
+    public int getMaxSessions(){
+        return maxSessions;
+    }
+
+    public int getIdleTimeoutSeconds(){
+        return idleTimeoutSeconds;
+    }
+
+    public GameOptions getGameOptions(){
+        return gameOptions;
+    }
+}
@@ -0,0 +1,464 @@
+package model;
+
+import view.DeltaEncoder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class responsible for letting any number of spectators watch one game live in a browser.
+ * <p>
+ * Every frame is encoded once, by {@link DeltaEncoder}, on the thread playing the game, and copied once into a
+ * read-only buffer that all spectators share. Frames are linked one after the other, and every spectator keeps a
+ * cursor on the last frame it was given. A single thread serves every spectator without blocking: it hands each one
+ * {@link ByteBuffer#duplicate() duplicates} of the frames after its cursor in one gathering write, so the bytes are
+ * never copied again and the work done per frame grows with the size of the frame, not with the audience.
+ * <p>
+ * Every {@link #KEYFRAME_INTERVAL} frames a keyframe of the whole board is encoded as well. It is not sent to anyone
+ * who is keeping up; it is where new spectators start, and where a spectator that fell more than {@link #MAX_LAG}
+ * frames behind is sent instead of its backlog, so a slow connection costs the hub nothing but its own socket buffer.
+ * <p>
+ * {@code GET /events} is the stream of server-sent events, and anything else gets the page of {@link HttpFrontend},
+ * which draws the board without a way to move.
+ */
+public class SpectatorHub implements AutoCloseable {
+    public static final int KEYFRAME_INTERVAL = 32;
+    public static final int MAX_LAG = 2 * KEYFRAME_INTERVAL;
+    private static final int MAX_GATHER = 64;
+    private static final int MAX_REQUEST = 1024;
+    private static final long DRAIN_NANOS = 1_000_000_000L;
+    private static final byte[] EVENTS_REQUEST = "GET /events".getBytes(StandardCharsets.US_ASCII);
+    private static final ByteBuffer STREAM_HEADER = ByteBuffer.wrap(("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream\r\nCache-Control: no-cache\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    private static final ByteBuffer PAGE_RESPONSE = pageResponse();
+
+    /**
+     * Class holding one encoded frame. The bytes never change once the frame is published.
+     */
+    private static final class Frame {
+        private final ByteBuffer data;
+        private final long sequence;
+        private volatile Frame next;
+
+        private Frame(byte[] bytes, int length, long sequence){
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, 0, copy, 0, length);
+            this.data = ByteBuffer.wrap(copy).asReadOnlyBuffer();
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Class holding what the serving thread knows about one connection.
+     */
+    private static final class Spectator {
+        private final SocketChannel channel;
+        private ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST);
+        private boolean streaming;
+        private boolean closeWhenWritten;
+        private Frame cursor;
+        private final ByteBuffer[] pending = new ByteBuffer[MAX_GATHER + 1];
+        private int pendingStart;
+        private int pendingEnd;
+
+        private Spectator(SocketChannel channel){
+            this.channel = channel;
+        }
+    }
+
+    private final DeltaEncoder deltas = new DeltaEncoder();
+    private final DeltaEncoder keyframes = new DeltaEncoder();
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile Frame latest;
+    private volatile Frame latestKeyframe;
+    private volatile boolean closed;
+    private long sequence;
+    private int sinceKeyframe;
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytesEncoded = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final ByteBuffer discard = ByteBuffer.allocate(MAX_REQUEST);
+    private volatile int spectators;
+
+    /**
+     * Opens the port on the loopback address and starts serving spectators.
+     * @param port the port to listen on, 0 for any free port.
+     * @throws IOException if the port cannot be opened.
+     */
+    public SpectatorHub(int port) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = Thread.ofPlatform().daemon().name("spectator-hub").start(this::serve);
+    }
+
+    /**
+     * Sends spectators whatever changed since the last call. Must always be called from the same thread, the one
+     * playing the game.
+     * @param gameState the game being watched.
+     * @param status P while the game goes on, W once it is won and L once it is lost.
+     */
+    public void publish(GameState gameState, char status){
+        int length = deltas.encode(gameState, status);
+        if (length == 0) {
+            return;
+        }
+        Frame frame = new Frame(deltas.getBuffer(), length, ++sequence);
+        Frame keyframe = latestKeyframe;
+        if (keyframe != null && keyframe.next == null && keyframe.sequence == sequence - 1) {
+            // A keyframe made after the previous frame goes on with this one
+            keyframe.next = frame;
+        }
+        if (latest != null) {
+            latest.next = frame;
+        }
+        latest = frame;
+        frames.increment();
+        bytesEncoded.add(length);
+        if (deltas.isKeyframe()) {
+            latestKeyframe = frame;
+            sinceKeyframe = 0;
+        } else if (++sinceKeyframe >= KEYFRAME_INTERVAL) {
+            keyframes.invalidate();
+            int keyLength = keyframes.encode(gameState, status);
+            latestKeyframe = new Frame(keyframes.getBuffer(), keyLength, sequence);
+            bytesEncoded.add(keyLength);
+            sinceKeyframe = 0;
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * @return the port the hub listens on.
+     */
+    public int getPort(){
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return a one line summary of what the hub has sent.
+     */
+    public String describe(){
+        return "Spectators: " + connections.sum() + " connected, " + frames.sum() + " frames encoded in "
+                + bytesEncoded.sum() + " bytes, " + bytesSent.sum() + " bytes sent, " + skips.sum()
+                + " skips to a keyframe";
+    }
+
+    /**
+     * @return how many spectators are watching right now.
+     */
+    public int getSpectators(){
+        return spectators;
+    }
+
+    /**
+     * @return how many bytes have been encoded, once each however many spectators they went to.
+     */
+    public long getBytesEncoded(){
+        return bytesEncoded.sum();
+    }
+
+    /**
+     * @return how many bytes have been written to spectators.
+     */
+    public long getBytesSent(){
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return how many times a spectator fell too far behind and was sent a keyframe instead.
+     */
+    public long getSkips(){
+        return skips.sum();
+    }
+
+    /**
+     * Stops serving and disconnects every spectator. Spectators are first given up to a second to receive what they are
+     * still owed, so the last frame published, such as the end of the game, reaches everyone who keeps reading.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+    }
+
+    private void serve(){
+        Frame sent = null;
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Spectator spectator = (Spectator) key.attachment();
+                    if (key.isReadable()) {
+                        read(key, spectator);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(key, spectator);
+                    }
+                }
+                Frame head = latest;
+                if (head != sent) {
+                    // Spectators with nothing left to write are sent more and the rest catch up when writable, unless
+                    // they fell so far behind that they are better off starting again from a keyframe
+                    sent = head;
+                    for (SelectionKey key : selector.keys()) {
+                        if (!key.isValid() || !(key.attachment() instanceof Spectator spectator) || !spectator.streaming) {
+                            continue;
+                        }
+                        if (spectator.pendingStart == spectator.pendingEnd) {
+                            write(key, spectator);
+                        } else if (isBehind(spectator)) {
+                            // Letting go of the cursor also lets go of the frames after it
+                            spectator.cursor = null;
+                            skips.increment();
+                        }
+                    }
+                }
+            }
+            drain();
+        } catch (IOException | ClosedSelectorException e) {
+            // The hub can no longer serve anyone, so it stops like it was closed
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+        }
+    }
+
+    /**
+     * Keeps writing to every connection until each has been sent everything up to the latest frame, or DRAIN_NANOS
+     * have passed. New connections are no longer accepted.
+     */
+    private void drain() throws IOException {
+        long deadline = System.nanoTime() + DRAIN_NANOS;
+        while (true) {
+            Frame head = latest;
+            boolean owed = false;
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid() || !(key.attachment() instanceof Spectator spectator)) {
+                    continue;
+                }
+                if (spectator.streaming && spectator.pendingStart == spectator.pendingEnd) {
+                    write(key, spectator);
+                }
+                if (key.isValid() && (spectator.pendingStart < spectator.pendingEnd || spectator.streaming
+                        && head != null && (spectator.cursor == null || spectator.cursor.sequence < head.sequence))) {
+                    owed = true;
+                }
+            }
+            long left = deadline - System.nanoTime();
+            if (!owed || left <= 0) {
+                return;
+            }
+            selector.select(Math.max(1, left / 1_000_000));
+            Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+            while (selected.hasNext()) {
+                SelectionKey key = selected.next();
+                selected.remove();
+                if (key.isValid() && key.attachment() instanceof Spectator spectator) {
+                    if (key.isReadable()) {
+                        read(key, spectator);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(key, spectator);
+                    }
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Spectator(channel));
+    }
+
+    /**
+     * Reads the request until its first line is in, then answers it. Anything read after that is thrown away.
+     */
+    private void read(SelectionKey key, Spectator spectator){
+        ByteBuffer buffer = spectator.request != null ? spectator.request : discard.clear();
+        int read;
+        try {
+            read = spectator.channel.read(buffer);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            closeQuietly(key);
+            return;
+        }
+        if (spectator.request == null) {
+            return;
+        }
+        if (!hasLine(buffer) && buffer.hasRemaining()) {
+            return;
+        }
+        spectator.request = null;
+        if (startsWith(buffer, EVENTS_REQUEST)) {
+            spectator.streaming = true;
+            spectator.pending[spectator.pendingEnd++] = STREAM_HEADER.duplicate();
+            spectators++;
+            connections.increment();
+        } else {
+            spectator.closeWhenWritten = true;
+            spectator.pending[spectator.pendingEnd++] = PAGE_RESPONSE.duplicate();
+        }
+        write(key, spectator);
+    }
+
+    /**
+     * Writes as much of what the spectator is owed as the socket takes, first topping it up with the frames after its
+     * cursor if everything queued so far went out.
+     */
+    private void write(SelectionKey key, Spectator spectator){
+        if (spectator.pendingStart == spectator.pendingEnd) {
+            spectator.pendingStart = 0;
+            spectator.pendingEnd = 0;
+        }
+        if (spectator.streaming && spectator.pendingEnd < spectator.pending.length) {
+            queueFrames(spectator);
+        }
+        try {
+            if (spectator.pendingStart < spectator.pendingEnd) {
+                bytesSent.add(spectator.channel.write(spectator.pending, spectator.pendingStart,
+                        spectator.pendingEnd - spectator.pendingStart));
+            }
+        } catch (IOException e) {
+            closeQuietly(key);
+            return;
+        }
+        while (spectator.pendingStart < spectator.pendingEnd && !spectator.pending[spectator.pendingStart].hasRemaining()) {
+            spectator.pending[spectator.pendingStart++] = null;
+        }
+        if (spectator.pendingStart < spectator.pendingEnd) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (spectator.closeWhenWritten) {
+            closeQuietly(key);
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Queues the frames after the spectator's cursor, or the latest keyframe and the frames after it if the spectator
+     * is new or fell too far behind.
+     */
+    private void queueFrames(Spectator spectator){
+        Frame head = latest;
+        Frame keyframe = latestKeyframe;
+        if (head == null || keyframe == null) {
+            return;
+        }
+        Frame next;
+        if (spectator.cursor == null) {
+            next = keyframe;
+        } else if (isBehind(spectator)) {
+            skips.increment();
+            next = keyframe;
+        } else {
+            next = spectator.cursor.next;
+        }
+        while (next != null && spectator.pendingEnd < spectator.pending.length) {
+            spectator.pending[spectator.pendingEnd++] = next.data.duplicate();
+            spectator.cursor = next;
+            next = next.next;
+        }
+    }
+
+    /**
+     * @return true if the spectator is more than MAX_LAG frames behind and the latest keyframe is ahead of it.
+     */
+    private boolean isBehind(Spectator spectator){
+        Frame cursor = spectator.cursor;
+        return cursor != null && latest.sequence - cursor.sequence > MAX_LAG
+                && cursor.sequence < latestKeyframe.sequence;
+    }
+
+    private void closeQuietly(SelectionKey key){
+        if (key.attachment() instanceof Spectator spectator) {
+            if (spectator.streaming) {
+                spectators--;
+                spectator.streaming = false;
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // The connection is gone either way
+        }
+    }
+
+    private static boolean hasLine(ByteBuffer buffer){
+        for (int i = 0; i < buffer.position(); i++) {
+            if (buffer.get(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix){
+        if (buffer.position() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        int end = prefix.length;
+        return end == buffer.position() || buffer.get(end) == ' ' || buffer.get(end) == '?';
+    }
+
+    private static ByteBuffer pageResponse(){
+        byte[] header = ("HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=utf-8\r\nContent-Length: "
+                + HttpFrontend.PAGE.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] response = new byte[header.length + HttpFrontend.PAGE.length];
+        System.arraycopy(header, 0, response, 0, header.length);
+        System.arraycopy(HttpFrontend.PAGE, 0, response, header.length, HttpFrontend.PAGE.length);
+        return ByteBuffer.wrap(response).asReadOnlyBuffer();
+    }
+}
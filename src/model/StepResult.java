@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Outcome of advancing the game by one player move through {@link GameState#step(char)}.
+ */
+public enum StepResult {
+    /** The player moved and the cats took their turn. */
+    MOVED,
+    /** The move would have gone through a wall, nothing changed. */
+    BLOCKED,
+    /** The input was not one of W, A, S or D, nothing changed. */
+    INVALID,
+    /** The player collected the last cheese needed to win. */
+    WON,
+    /** A cat caught the player. */
+    LOST
+}
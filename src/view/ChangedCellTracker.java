@@ -0,0 +1,155 @@
+package view;
+
+import model.FogOfWar;
+import model.GameState;
+
+/**
+ * Class holding the symbol a viewer was last shown on every cell, so that a frame only has to carry the cells whose
+ * symbol changed. Only cells that can have changed are looked at: those the fog of war logged as revealed since the
+ * last frame, and those an entity stood on in the last frame or stands on now. That covers entity moves and newly
+ * revealed fog alike. When the fog is replaced or reset the log no longer says what changed, so every cell has to be
+ * compared, and when the maze changes size the viewer needs it drawn in full.
+ */
+final class ChangedCellTracker {
+    /**
+     * Told about every cell whose symbol changed, after the new symbol is remembered.
+     */
+    interface Listener {
+        /**
+         * @param cell the cell's index, y * width + x.
+         * @param symbol the symbol the cell shows now.
+         */
+        void cellChanged(int cell, byte symbol);
+    }
+
+    private static final char UNEXPLORED = '.';
+
+    private byte[] shown;
+    private boolean valid;
+    private int width;
+    private int height;
+    private FogOfWar fog;
+    private int fogGeneration;
+    private int fogCursor;
+    private int[] entityCells = new int[8];
+    private int entityCount;
+
+    /**
+     * @param gameState the game about to be shown.
+     * @return true if a frame of the same size was shown and has not been invalidated since.
+     */
+    boolean hasFrame(GameState gameState){
+        return valid && width == gameState.getWidth() && height == gameState.getHeight();
+    }
+
+    /**
+     * @param gameState the game about to be shown.
+     * @return true if the fog's log still holds every cell revealed since the last frame.
+     */
+    boolean isFogCurrent(GameState gameState){
+        return gameState.getFog() == fog && fog.getGeneration() == fogGeneration;
+    }
+
+    /**
+     * Starts a frame drawn in full. The caller hands every symbol it draws to {@link #remember(int, byte)}.
+     * @param gameState the game being shown.
+     */
+    void startFrame(GameState gameState){
+        width = gameState.getWidth();
+        height = gameState.getHeight();
+        if (shown == null || shown.length != width * height) {
+            shown = new byte[width * height];
+        }
+        valid = true;
+        rememberFog(gameState.getFog());
+        rememberEntities(gameState);
+    }
+
+    /**
+     * @param cell the cell's index, y * width + x.
+     * @param symbol the symbol drawn on it.
+     */
+    void remember(int cell, byte symbol){
+        shown[cell] = symbol;
+    }
+
+    /**
+     * Compares every cell, for when the fog was replaced or reset since the last frame.
+     * @param gameState the game being shown.
+     * @param listener told about each changed cell.
+     */
+    void compareAll(GameState gameState, Listener listener){
+        for (int cell = 0; cell < width * height; cell++) {
+            compare(gameState, cell, listener);
+        }
+        rememberFog(gameState.getFog());
+        rememberEntities(gameState);
+    }
+
+    /**
+     * Compares the cells revealed since the last frame, the cells entities left and the cells they stand on now.
+     * @param gameState the game being shown.
+     * @param listener told about each changed cell.
+     */
+    void compareChanged(GameState gameState, Listener listener){
+        int revealCount = fog.getRevealCount();
+        for (int i = fogCursor; i < revealCount; i++) {
+            compare(gameState, fog.getRevealedCell(i), listener);
+        }
+        fogCursor = revealCount;
+
+        for (int i = 0; i < entityCount; i++) {
+            compare(gameState, entityCells[i], listener);
+        }
+        rememberEntities(gameState);
+        for (int i = 0; i < entityCount; i++) {
+            compare(gameState, entityCells[i], listener);
+        }
+    }
+
+    /**
+     * Forgets what the viewer was shown, so the next frame is drawn in full.
+     */
+    void invalidate(){
+        valid = false;
+    }
+
+    /**
+     * @return the symbol a player sees on a cell: what is there if it is revealed or an entity stands on it, otherwise
+     * '.'.
+     */
+    static byte symbolAt(GameState gameState, int x, int y){
+        char cell = gameState.getCell(x, y);
+        if (gameState.isRevealed(x, y) || cell == '@' || cell == '$' || cell == '!') {
+            return (byte) cell;
+        }
+        return (byte) UNEXPLORED;
+    }
+
+    private void compare(GameState gameState, int cell, Listener listener){
+        byte symbol = symbolAt(gameState, cell % width, cell / width);
+        if (shown[cell] != symbol) {
+            shown[cell] = symbol;
+            listener.cellChanged(cell, symbol);
+        }
+    }
+
+    private void rememberFog(FogOfWar fog){
+        this.fog = fog;
+        this.fogGeneration = fog.getGeneration();
+        this.fogCursor = fog.getRevealCount();
+    }
+
+    private void rememberEntities(GameState gameState){
+        int catCount = gameState.getCatCount();
+        if (entityCells.length < catCount + 2) {
+            entityCells = new int[catCount + 2];
+        }
+        entityCount = 0;
+        entityCells[entityCount++] = gameState.getPlayer().getY() * width + gameState.getPlayer().getX();
+        entityCells[entityCount++] = gameState.getCheese().getY() * width + gameState.getCheese().getX();
+        for (int i = 0; i < catCount; i++) {
+            entityCells[entityCount++] = gameState.getCatY(i) * width + gameState.getCatX(i);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package view;
+
+import model.GameState;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class responsible for turning a game into server-sent events for a browser. The first event of a stream is a
+ * keyframe holding every cell; later events only hold the cells whose symbol changed, so a move usually costs a few
+ * dozen bytes however big the maze is. Which cells changed is found by a {@link ChangedCellTracker}, as for
+ * {@link TerminalRenderer}; when the tracker cannot tell, the next event is a keyframe.
+ * <p>
+ * Both kinds of event carry one line of data that starts with {@code collected,toWin,status,} where status is P while
+ * the game goes on, W once it is won and L once it is lost. A keyframe ({@code event: key}) goes on with
+ * {@code width,height,} and then width * height symbols, row by row. A delta (a plain message) goes on with one entry
+ * per changed cell: the cell's index y * width + x in base 36, followed by its symbol. Symbols are never letters or
+ * digits, so each entry ends at its symbol. Events are built in a reusable buffer.
+ */
+public class DeltaEncoder {
+    private static final byte[] KEYFRAME = "event: key\ndata: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELTA = "data: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = {'\n', '\n'};
+
+    private final ChangedCellTracker cells = new ChangedCellTracker();
+    private final ChangedCellTracker.Listener appendCell = this::appendCell;
+    private byte[] buffer = new byte[256];
+    private int length;
+    private int sentCollected;
+    private int sentToWin;
+    private char sentStatus;
+    private boolean keyframe;
+
+    /**
+     * Builds the event that brings a client up to date with the game. Nothing is built when nothing a client can see
+     * has changed since the last event.
+     * @param gameState the game.
+     * @param status P while the game goes on, W once it is won and L once it is lost.
+     * @return the number of bytes of the event in {@link #getBuffer()}, 0 if there is nothing to send.
+     */
+    public int encode(GameState gameState, char status){
+        length = 0;
+        keyframe = false;
+        if (!cells.hasFrame(gameState) || !cells.isFogCurrent(gameState)) {
+            appendKeyframe(gameState, status);
+            return length;
+        }
+        boolean statusChanged = gameState.getCheeseCollected() != sentCollected
+                || gameState.getCheeseToWin() != sentToWin || status != sentStatus;
+        append(DELTA);
+        appendStatus(gameState, status);
+        int header = length;
+        cells.compareChanged(gameState, appendCell);
+        if (length == header && !statusChanged) {
+            length = 0;
+            return 0;
+        }
+        append(END);
+        return length;
+    }
+
+    /**
+     * Forgets what the client was sent, so the next event is a keyframe.
+     */
+    public void invalidate(){
+        cells.invalidate();
+    }
+
+    /**
+     * @return true if the last event built was a keyframe.
+     */
+    public boolean isKeyframe(){
+        return keyframe;
+    }
+
+    /**
+     * @return the buffer holding the last event built. Only the bytes counted by encode are valid.
+     */
+    public byte[] getBuffer(){
+        return buffer;
+    }
+
+    private void appendKeyframe(GameState gameState, char status){
+        keyframe = true;
+        int width = gameState.getWidth();
+        int height = gameState.getHeight();
+        cells.startFrame(gameState);
+        append(KEYFRAME);
+        appendStatus(gameState, status);
+        appendInt(width);
+        append((byte) ',');
+        appendInt(height);
+        append((byte) ',');
+        ensureCapacity(width * height + END.length);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte symbol = ChangedCellTracker.symbolAt(gameState, x, y);
+                cells.remember(y * width + x, symbol);
+                buffer[length++] = symbol;
+            }
+        }
+        append(END);
+    }
+
+    private void appendStatus(GameState gameState, char status){
+        sentCollected = gameState.getCheeseCollected();
+        sentToWin = gameState.getCheeseToWin();
+        sentStatus = status;
+        appendInt(gameState.getCheeseCollected());
+        append((byte) ',');
+        appendInt(gameState.getCheeseToWin());
+        append((byte) ',');
+        append((byte) status);
+        append((byte) ',');
+    }
+
+    private void appendCell(int cell, byte symbol){
+        appendBase36(cell);
+        append(symbol);
+    }
+
+    private void appendBase36(int value){
+        ensureCapacity(7);
+        int digits = 1;
+        for (int rest = value / 36; rest > 0; rest /= 36) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            int digit = value % 36;
+            buffer[length + i] = (byte) (digit < 10 ? '0' + digit : 'a' + digit - 10);
+            value /= 36;
+        }
+        length += digits;
+    }
+
+    private void appendInt(int value){
+        ensureCapacity(11);
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[length + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void append(byte value){
+        ensureCapacity(1);
+        buffer[length++] = value;
+    }
+
+    private void append(byte[] bytes){
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra){
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package view;
+
+import model.GameState;
+
+import java.io.PrintStream;
+
+/**
+ * Class responsible for drawing the maze to a terminal. Each frame is built in a reusable byte buffer and written with
+ * a single call.
+ * <p>
+ * In full mode every frame is the whole maze, exactly as the game has always printed it. In diff mode the first frame
+ * clears the screen and draws the whole maze, and later frames use ANSI cursor addressing to redraw only the cells
+ * whose symbol changed, then park the cursor under the maze so status text and the prompt print below it. Which cells
+ * changed is found by a {@link ChangedCellTracker}. Diff mode assumes the terminal is tall enough that nothing printed
+ * between frames scrolls the maze; call {@link #invalidate()} after printing anything long so the next frame is drawn
+ * in full.
+ */
+public class TerminalRenderer {
+    private static final byte ESC = 0x1b;
+    private static final byte[] HEADER = {'M', 'a', 'z', 'e', ':', '\n'};
+    private static final byte[] CLEAR_SCREEN = {ESC, '[', 'H', ESC, '[', '2', 'J'};
+    private static final byte[] CLEAR_BELOW = {ESC, '[', 'J'};
+
+    private final PrintStream out;
+    private final boolean diff;
+    private final ChangedCellTracker cells = new ChangedCellTracker();
+    private final ChangedCellTracker.Listener redraw = this::appendCell;
+    private byte[] buffer = new byte[1024];
+    private int length;
+    private int width;
+
+    /**
+     * @param out the stream frames are written to.
+     * @param diff true to redraw only changed cells using ANSI escape codes, false to print every frame in full.
+     */
+    public TerminalRenderer(PrintStream out, boolean diff){
+        this.out = out;
+        this.diff = diff;
+    }
+
+    /**
+     * Draws the current state of the game. Cells the player has not revealed are drawn as '.', except that the player,
+     * cats and cheese are always visible.
+     * @param gameState the game to draw.
+     */
+    public void render(GameState gameState){
+        length = 0;
+        if (!diff) {
+            appendFullFrame(gameState, false);
+        } else if (!cells.hasFrame(gameState)) {
+            width = gameState.getWidth();
+            cells.startFrame(gameState);
+            append(CLEAR_SCREEN);
+            appendFullFrame(gameState, true);
+            append(CLEAR_BELOW);
+        } else {
+            if (cells.isFogCurrent(gameState)) {
+                cells.compareChanged(gameState, redraw);
+            } else {
+                cells.compareAll(gameState, redraw);
+            }
+            appendCursorMove(gameState.getHeight() + 2, 1);
+            append(CLEAR_BELOW);
+        }
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    /**
+     * Forgets what is on screen, so the next frame in diff mode clears the screen and is drawn in full.
+     */
+    public void invalidate(){
+        cells.invalidate();
+    }
+
+    private void appendFullFrame(GameState gameState, boolean remember){
+        append(HEADER);
+        int rowWidth = gameState.getWidth();
+        for (int y = 0; y < gameState.getHeight(); y++) {
+            ensureCapacity(rowWidth + 1);
+            for (int x = 0; x < rowWidth; x++) {
+                byte symbol = ChangedCellTracker.symbolAt(gameState, x, y);
+                buffer[length++] = symbol;
+                if (remember) {
+                    cells.remember(y * rowWidth + x, symbol);
+                }
+            }
+            buffer[length++] = '\n';
+        }
+    }
+
+    private void appendCell(int cell, byte symbol){
+        // The maze starts on the second line of the screen, below the header
+        appendCursorMove(cell / width + 2, cell % width + 1);
+        ensureCapacity(1);
+        buffer[length++] = symbol;
+    }
+
+    private void appendCursorMove(int row, int column){
+        ensureCapacity(24);
+        buffer[length++] = ESC;
+        buffer[length++] = '[';
+        appendInt(row);
+        buffer[length++] = ';';
+        appendInt(column);
+        buffer[length++] = 'H';
+    }
+
+    private void appendInt(int value){
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[length + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void append(byte[] bytes){
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra){
+        if (length + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + extra)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
@@ -1,28 +1,78 @@
 package view;
 
+import model.GameEvents;
+import model.GameMetrics;
+import model.GameState;
+
+import java.io.PrintStream;
+
 /**
- * Class resonabile for printing starting and help menues.
+ * Class resonabile for printing starting and help menues, and the maze itself.
  */
 public class UI {
+    private final PrintStream out;
+    private final TerminalRenderer renderer;
+
+    public UI(){
+        this(System.out);
+    }
+
+    /**
+     * @param out the stream everything is printed to.
+     */
+    public UI(PrintStream out){
+        this(out, false);
+    }
+
+    /**
+     * @param out the stream everything is printed to.
+     * @param ansi true to redraw only the cells that changed between frames using ANSI escape codes.
+     */
+    public UI(PrintStream out, boolean ansi){
+        this.out = out;
+        this.renderer = new TerminalRenderer(out, ansi);
+    }
+
     public void startingMenu(){
-        System.out.println("----------------------------------------");
-        System.out.println("Welcome to Cat and Mouse Maze Adventure!");
-        System.out.println("by Sean Dhillon");
-        System.out.println("----------------------------------------");
-        System.out.println();
+        out.println("----------------------------------------");
+        out.println("Welcome to Cat and Mouse Maze Adventure!");
+        out.println("by Sean Dhillon");
+        out.println("----------------------------------------");
+        out.println();
 
     }
     public void helpMenu(){
-        System.out.println("DIRECTIONS:");
-        System.out.println("        Find 5 cheese before a cat eats you!");
-        System.out.println("LEGEND:");
-        System.out.println("        #: Wall");
-        System.out.println("        @: You (a mouse)");
-        System.out.println("        !: Cat");
-        System.out.println("        $: Cheese");
-        System.out.println("        .: Unexplored Space");
-        System.out.println("MOVES:");
-        System.out.println("        Use W (up), A (left), S (down), and D (right) to move.");
-        System.out.println("        (You must press enter after each move");
+        out.println("DIRECTIONS:");
+        out.println("        Find 5 cheese before a cat eats you!");
+        out.println("LEGEND:");
+        out.println("        #: Wall");
+        out.println("        @: You (a mouse)");
+        out.println("        !: Cat");
+        out.println("        $: Cheese");
+        out.println("        .: Unexplored Space");
+        out.println("MOVES:");
+        out.println("        Use W (up), A (left), S (down), and D (right) to move.");
+        out.println("        (You must press enter after each move");
+        out.println("        Press H for a hint.");
+        renderer.invalidate();
+    }
+
+    /**
+     * Method which outputs maze to screen. Takes into account which cells are revealed to the player and which are not
+     * and does the respective output
+     * @param gameState the game whose maze is printed.
+     */
+    public void printMaze(GameState gameState) {
+        long start = GameMetrics.start();
+        GameEvents.PrintMaze event = null;
+        if (GameEvents.PRINT_MAZE.isEnabled()) {
+            event = new GameEvents.PrintMaze();
+            event.begin();
+        }
+        renderer.render(gameState);
+        if (event != null) {
+            event.commit();
+        }
+        GameMetrics.record(GameMetrics.Phase.PRINT_MAZE, start);
     }
 }